@@ -0,0 +1,119 @@
+package top.srsea.lever.concurrent;
+
+import android.os.Build;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/// Throughput of Dispatchers.forkJoin() against Dispatchers.parallel(), reported to logcat
+/// under the tag ForkJoinBenchmark. Only checks that every task runs, the numbers are for comparison.
+@RunWith(AndroidJUnit4.class)
+public class ForkJoinThroughputBenchmark {
+    private static final String TAG = "ForkJoinBenchmark";
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int MEASURED_ROUNDS = 5;
+    private static final int EXTERNAL_TASKS = 100000;
+    private static final int NESTED_ROOTS = 1000;
+    private static final int NESTED_CHILDREN = 100;
+    private static final int WORK_ITERATIONS = 200;
+
+    private final AtomicLong sink = new AtomicLong();
+
+    @Before
+    public void setUp() {
+        // forkJoin() is parallel() before Lollipop, there is nothing to compare
+        assumeTrue(Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP);
+    }
+
+    /// Tiny tasks dispatched from a thread outside the pool
+    @Test
+    public void externalSubmission() throws InterruptedException {
+        report("external", EXTERNAL_TASKS,
+                measure(Dispatchers.parallel(), false), measure(Dispatchers.forkJoin(), false));
+    }
+
+    /// Tiny tasks dispatched by tasks of the pool, as in fan-out
+    @Test
+    public void nestedSubmission() throws InterruptedException {
+        report("nested", NESTED_ROOTS * NESTED_CHILDREN,
+                measure(Dispatchers.parallel(), true), measure(Dispatchers.forkJoin(), true));
+    }
+
+    private long[] measure(@NonNull Dispatcher dispatcher, boolean nested) throws InterruptedException {
+        for (int i = 0; i < WARMUP_ROUNDS; ++i) {
+            round(dispatcher, nested);
+        }
+        long[] nanos = new long[MEASURED_ROUNDS];
+        for (int i = 0; i < MEASURED_ROUNDS; ++i) {
+            nanos[i] = round(dispatcher, nested);
+        }
+        return nanos;
+    }
+
+    private long round(@NonNull final Dispatcher dispatcher, boolean nested) throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(nested ? NESTED_ROOTS * NESTED_CHILDREN : EXTERNAL_TASKS);
+        final Runnable leaf = new Runnable() {
+            @Override
+            public void run() {
+                work();
+                latch.countDown();
+            }
+        };
+        Runnable root = new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < NESTED_CHILDREN; ++i) {
+                    dispatcher.dispatch(leaf);
+                }
+            }
+        };
+        long start = System.nanoTime();
+        if (nested) {
+            for (int i = 0; i < NESTED_ROOTS; ++i) {
+                dispatcher.dispatch(root);
+            }
+        } else {
+            for (int i = 0; i < EXTERNAL_TASKS; ++i) {
+                dispatcher.dispatch(leaf);
+            }
+        }
+        assertTrue("tasks not completed", latch.await(60, TimeUnit.SECONDS));
+        return System.nanoTime() - start;
+    }
+
+    private void work() {
+        long x = System.nanoTime();
+        for (int i = 0; i < WORK_ITERATIONS; ++i) {
+            x = x * 6364136223846793005L + 1442695040888963407L;
+        }
+        // keeps the loop from being optimized away without contending on a shared field
+        if (x == 0) sink.incrementAndGet();
+    }
+
+    private static void report(@NonNull String name, int tasks, @NonNull long[] parallel, @NonNull long[] forkJoin) {
+        double parallelOps = opsPerSecond(tasks, parallel);
+        double forkJoinOps = opsPerSecond(tasks, forkJoin);
+        Log.i(TAG, String.format(Locale.US, "%s: parallel %.0f ops/s, forkJoin %.0f ops/s, speedup %.2fx",
+                name, parallelOps, forkJoinOps, forkJoinOps / parallelOps));
+    }
+
+    private static double opsPerSecond(int tasks, @NonNull long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        return tasks * 1e9 / sorted[sorted.length / 2];
+    }
+}
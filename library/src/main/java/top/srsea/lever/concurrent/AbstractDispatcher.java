@@ -1,10 +1,15 @@
 package top.srsea.lever.concurrent;
 
+import android.os.Handler;
+import android.os.HandlerThread;
 import android.os.SystemClock;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
-public abstract class AbstractDispatcher implements Dispatcher {
+import java.util.concurrent.RejectedExecutionException;
+
+public abstract class AbstractDispatcher implements PeriodicDispatcher {
 
     @NonNull
     public Cancellable dispatch(@NonNull Runnable task) {
@@ -13,41 +18,141 @@ public abstract class AbstractDispatcher implements Dispatcher {
 
     @NonNull
     public Cancellable dispatch(long delayMillis, long periodMillis, @NonNull Runnable task) {
-        long startMillis = SystemClock.uptimeMillis();
-        PeriodTask periodTask = new PeriodTask(task, startMillis, delayMillis, periodMillis);
-        periodTask.cancellable = dispatch(delayMillis, periodTask);
+        return dispatch(delayMillis, periodMillis, PeriodMode.FIXED_RATE, MissedTickPolicy.COALESCE, task);
+    }
+
+    @NonNull
+    public Cancellable dispatch(long delayMillis, long periodMillis, @NonNull PeriodMode mode,
+                                @NonNull MissedTickPolicy policy, @NonNull Runnable task) {
+        if (periodMillis <= 0) {
+            throw new IllegalArgumentException("periodMillis must be positive: " + periodMillis);
+        }
+        PeriodTask periodTask = new PeriodTask(task, periodMillis, mode, policy);
+        periodTask.start(Math.max(delayMillis, 0));
         return periodTask;
     }
 
+    /// Posts the timer of a periodic task, called again after every tick,
+    /// subclasses override to repost the same timer without allocation
+    protected void postDelayed(@NonNull Timer timer, long delayMillis) {
+        dispatch(delayMillis, timer);
+    }
+
+    /// Removes the posted timer of a cancelled periodic task if possible
+    protected void removeCallbacks(@NonNull Timer timer) {
+    }
+
+    /// Runs a tick of a periodic task when its timer fires, on the timer thread by default
+    protected void execute(@NonNull Timer timer) {
+        timer.tick.run();
+    }
+
+    /// For dispatchers without a looper of their own, reposting a timer allocates nothing
+    @NonNull
+    static Handler timerHandler() {
+        return TimerHandler.INSTANCE;
+    }
+
+    /// The timer of a periodic task, the same one is posted for every tick
+    protected final class Timer implements Runnable {
+        @NonNull
+        public final Runnable tick;
+        // kept by the dispatcher posting the timer, to repost it without allocation
+        @Nullable
+        Object postHandle;
+        // kept by the dispatcher executing the tick, to execute it without allocation
+        @Nullable
+        Object executeHandle;
+        private final PeriodTask task;
+
+        private Timer(@NonNull PeriodTask task) {
+            this.tick = task;
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            if (task.canceled) return;
+            try {
+                execute(this);
+            } catch (RejectedExecutionException e) {
+                // thrown on the timer thread otherwise, which may be shared by other timers
+                task.reject();
+            }
+        }
+    }
+
     private class PeriodTask implements Runnable, Cancellable {
         final Runnable inner;
-        final long startMillis;
-        final long delayMillis;
         final long periodMillis;
-        int tickCount;
+        final PeriodMode mode;
+        final MissedTickPolicy policy;
+        final Timer timer = new Timer(this);
+        long nextTickMillis;
         volatile boolean canceled;
-        Cancellable cancellable;
 
-        PeriodTask(@NonNull Runnable inner, long startMillis, long delayMillis, long periodMillis) {
+        PeriodTask(@NonNull Runnable inner, long periodMillis, @NonNull PeriodMode mode,
+                   @NonNull MissedTickPolicy policy) {
             this.inner = inner;
-            this.startMillis = startMillis;
-            this.delayMillis = delayMillis;
             this.periodMillis = periodMillis;
+            this.mode = mode;
+            this.policy = policy;
+        }
+
+        void start(long delayMillis) {
+            nextTickMillis = SystemClock.uptimeMillis() + delayMillis;
+            postDelayed(timer, delayMillis);
         }
 
         @Override
         public void run() {
             if (canceled) return;
-            ++tickCount;
-            long nextTickMillis = startMillis + delayMillis + tickCount * periodMillis;
-            cancellable = dispatch(nextTickMillis - SystemClock.uptimeMillis(), this);
-            inner.run();
+            long dueMillis = nextTickMillis;
+            long missed = mode == PeriodMode.FIXED_RATE
+                    ? Math.max(SystemClock.uptimeMillis() - dueMillis, 0) / periodMillis
+                    : 0;
+            // the due tick always runs, only BURST makes up the missed ones
+            long runs = policy == MissedTickPolicy.BURST ? missed + 1 : 1;
+            try {
+                for (long i = 0; i < runs && !canceled; ++i) {
+                    inner.run();
+                }
+            } catch (RuntimeException ignored) {
+                // contained as a submitted task would be, the following ticks still run
+            } finally {
+                // posted after the run, so that runs of the same task never overlap,
+                // ticks passed during the run are handled by the policy on the next run
+                long nowMillis = SystemClock.uptimeMillis();
+                nextTickMillis = mode == PeriodMode.FIXED_RATE
+                        ? dueMillis + (missed + 1) * periodMillis
+                        : nowMillis + periodMillis;
+                if (!canceled) postDelayed(timer, Math.max(nextTickMillis - nowMillis, 0));
+            }
+        }
+
+        /// Drops a tick rejected by the dispatcher, and tries again at the next tick
+        void reject() {
+            long nowMillis = SystemClock.uptimeMillis();
+            nextTickMillis = mode == PeriodMode.FIXED_RATE
+                    ? nextTickMillis + (Math.max(nowMillis - nextTickMillis, 0) / periodMillis + 1) * periodMillis
+                    : nowMillis + periodMillis;
+            if (!canceled) postDelayed(timer, nextTickMillis - nowMillis);
         }
 
         @Override
         public void cancel() {
             canceled = true;
-            cancellable.cancel();
+            removeCallbacks(timer);
+        }
+    }
+
+    private static class TimerHandler {
+        private static final Handler INSTANCE = newTimerHandler();
+
+        private static Handler newTimerHandler() {
+            HandlerThread thread = new HandlerThread("DispatcherTimer");
+            thread.start();
+            return new Handler(thread.getLooper());
         }
     }
 }
@@ -0,0 +1,19 @@
+package top.srsea.lever.concurrent;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.TimeUnit;
+
+/// Coalesces tasks into one run posted to the parent, such as the main looper,
+/// instead of a post per task. A run yields to the parent once the time budget is spent.
+public class BatchingDispatcher extends SerialDispatcher {
+    private static final long DEFAULT_BUDGET_MILLIS = 8;
+
+    public BatchingDispatcher(@NonNull Dispatcher parent) {
+        this(parent, DEFAULT_BUDGET_MILLIS);
+    }
+
+    public BatchingDispatcher(@NonNull Dispatcher parent, long budgetMillis) {
+        super(parent, Integer.MAX_VALUE, TimeUnit.MILLISECONDS.toNanos(budgetMillis));
+    }
+}
@@ -1,33 +1,87 @@
 package top.srsea.lever.concurrent;
 
+import android.os.Build;
 import android.os.Looper;
 
 import androidx.annotation.NonNull;
 
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 public final class DispatchExecutors {
+    private static final int BOUNDED_ELASTIC_THREADS_PER_CORE = 10;
+    private static final int BOUNDED_ELASTIC_QUEUE_CAPACITY = 100000;
+    private static final long BOUNDED_ELASTIC_TTL_SECONDS = 60L;
+
+    private static volatile boolean boundedElastic;
 
     /// For UI tasks
     public static Executor main() {
         return Main.INSTANCE;
     }
 
-    /// For IO intensive tasks
+    /// For IO intensive tasks, unbounded unless bounded elastic is enabled
     public static ExecutorService elastic() {
+        return boundedElastic ? BoundedElastic.INSTANCE : Elastic.INSTANCE;
+    }
+
+    /// Switches elastic() to the bounded one, tasks already submitted are not affected
+    public static void setBoundedElastic(boolean enabled) {
+        boundedElastic = enabled;
+    }
+
+    public static boolean isBoundedElastic() {
+        return boundedElastic;
+    }
+
+    static ExecutorService unboundedElastic() {
         return Elastic.INSTANCE;
     }
 
+    /// For IO intensive tasks, at most 10 threads per core, idle threads evicted after 60s,
+    /// tasks beyond the threads queued up to 100000, then rejected
+    public static ExecutorService boundedElastic() {
+        return BoundedElastic.INSTANCE;
+    }
+
+    /// For blocking IO tasks, a virtual thread per task if supported by the runtime,
+    /// otherwise same as boundedElastic()
+    public static ExecutorService virtual() {
+        return Virtual.INSTANCE;
+    }
+
+    public static boolean isVirtualSupported() {
+        return Virtual.INSTANCE != BoundedElastic.INSTANCE;
+    }
+
+    public static ExecutorService newBoundedElastic(int maxThreads, int queueCapacity,
+                                                    long ttlSeconds,
+                                                    @NonNull RejectedExecutionHandler handler) {
+        // threads grow up to the cap before queueing, since all threads are core threads
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(maxThreads, maxThreads,
+                ttlSeconds, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(queueCapacity), handler);
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
     /// For CPU intensive tasks
     public static ExecutorService parallel() {
         return Parallel.INSTANCE;
     }
 
+    /// For CPU intensive small tasks, with per-worker deques and work stealing,
+    /// same as parallel() before Lollipop
+    public static ExecutorService forkJoin() {
+        return ForkJoin.INSTANCE;
+    }
+
     public static ExecutorService single() {
         return Single.INSTANCE;
     }
@@ -50,6 +104,29 @@ public final class DispatchExecutors {
                 Integer.MAX_VALUE, 60L, TimeUnit.SECONDS, new SynchronousQueue<Runnable>());
     }
 
+    private static class BoundedElastic {
+        private static final ExecutorService INSTANCE = newBoundedElastic(
+                BOUNDED_ELASTIC_THREADS_PER_CORE * Runtime.getRuntime().availableProcessors(),
+                BOUNDED_ELASTIC_QUEUE_CAPACITY, BOUNDED_ELASTIC_TTL_SECONDS,
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    private static class Virtual {
+        private static final ExecutorService INSTANCE;
+
+        static {
+            ExecutorService executor;
+            try {
+                executor = (ExecutorService) Executors.class
+                        .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (Exception e) {
+                // virtual threads are not available or not enabled
+                executor = boundedElastic();
+            }
+            INSTANCE = executor;
+        }
+    }
+
     private static class Parallel {
         private static final ExecutorService INSTANCE;
 
@@ -60,6 +137,19 @@ public final class DispatchExecutors {
         }
     }
 
+    private static class ForkJoin {
+        private static final ExecutorService INSTANCE;
+
+        static {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+                INSTANCE = new ForkJoinPool(Runtime.getRuntime().availableProcessors(),
+                        ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+            } else {
+                INSTANCE = parallel();
+            }
+        }
+    }
+
     private static class Single {
         private static final ExecutorService INSTANCE = newSingle();
     }
@@ -0,0 +1,79 @@
+package top.srsea.lever.concurrent;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+public final class DispatcherInstrumentation {
+    private static final ConcurrentMap<String, DispatcherMetrics> METRICS = new ConcurrentHashMap<>();
+
+    private static volatile boolean enabled;
+    @Nullable
+    private static Cancellable reporting;
+
+    /// Shared dispatchers of Dispatchers are instrumented while enabled,
+    /// otherwise they are returned as is without any overhead
+    public static void setEnabled(boolean enabled) {
+        DispatcherInstrumentation.enabled = enabled;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /// Wraps the dispatcher to record metrics under the name, and registers the metrics,
+    /// dispatchers instrumented under the same name share the metrics until it is unregistered
+    @NonNull
+    public static InstrumentedDispatcher instrument(@NonNull String name, @NonNull Dispatcher dispatcher) {
+        DispatcherMetrics metrics = METRICS.get(name);
+        if (metrics == null) {
+            DispatcherMetrics created = new DispatcherMetrics(name);
+            metrics = METRICS.putIfAbsent(name, created);
+            if (metrics == null) metrics = created;
+        }
+        return new InstrumentedDispatcher(dispatcher, metrics);
+    }
+
+    /// Stops pulling and pushing the metrics of the name, its dispatchers keep recording into them
+    @Nullable
+    public static DispatcherMetrics unregister(@NonNull String name) {
+        return METRICS.remove(name);
+    }
+
+    /// Pulls metrics of all instrumented dispatchers
+    @NonNull
+    public static List<DispatcherMetrics> metrics() {
+        return new ArrayList<>(METRICS.values());
+    }
+
+    @Nullable
+    public static DispatcherMetrics metrics(@NonNull String name) {
+        return METRICS.get(name);
+    }
+
+    /// Pushes metrics of all instrumented dispatchers to the sink every period, null to stop
+    public static synchronized void setSink(@Nullable final MetricsSink sink, long periodMillis) {
+        if (reporting != null) {
+            reporting.cancel();
+            reporting = null;
+        }
+        if (sink == null) return;
+        // not through Dispatchers.wheel(), reporting is never recorded into the metrics it reports
+        reporting = Dispatchers.Wheel.INSTANCE.dispatch(periodMillis, periodMillis, new Runnable() {
+            @Override
+            public void run() {
+                report(sink);
+            }
+        });
+    }
+
+    public static void report(@NonNull MetricsSink sink) {
+        for (DispatcherMetrics metrics : METRICS.values()) {
+            sink.report(metrics);
+        }
+    }
+}
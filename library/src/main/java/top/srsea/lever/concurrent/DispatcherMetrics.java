@@ -0,0 +1,105 @@
+package top.srsea.lever.concurrent;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class DispatcherMetrics {
+    private final String name;
+    private final AtomicInteger queueDepth = new AtomicInteger();
+    private final AtomicInteger activeCount = new AtomicInteger();
+    private final AtomicLong submittedCount = new AtomicLong();
+    private final AtomicLong completedCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final AtomicLong cancelledCount = new AtomicLong();
+    private final LatencyHistogram waitTime = new LatencyHistogram();
+    private final LatencyHistogram runTime = new LatencyHistogram();
+
+    public DispatcherMetrics(@NonNull String name) {
+        this.name = name;
+    }
+
+    @NonNull
+    public String name() {
+        return name;
+    }
+
+    /// Tasks dispatched but not started, including delayed tasks not due yet
+    public int queueDepth() {
+        return queueDepth.get();
+    }
+
+    /// Tasks running, which is the count of busy threads
+    public int activeCount() {
+        return activeCount.get();
+    }
+
+    public long submittedCount() {
+        return submittedCount.get();
+    }
+
+    /// Runs finished, each tick of a periodic task counts
+    public long completedCount() {
+        return completedCount.get();
+    }
+
+    public long rejectedCount() {
+        return rejectedCount.get();
+    }
+
+    public long cancelledCount() {
+        return cancelledCount.get();
+    }
+
+    /// Nanoseconds from due to start, periodic ticks excluded
+    @NonNull
+    public LatencyHistogram waitTime() {
+        return waitTime;
+    }
+
+    /// Nanoseconds from start to end
+    @NonNull
+    public LatencyHistogram runTime() {
+        return runTime;
+    }
+
+    void onSubmit(boolean queued) {
+        submittedCount.incrementAndGet();
+        if (queued) queueDepth.incrementAndGet();
+    }
+
+    void onRejected(boolean queued) {
+        rejectedCount.incrementAndGet();
+        if (queued) queueDepth.decrementAndGet();
+    }
+
+    void onStart(boolean queued, long waitNanos) {
+        if (queued) {
+            queueDepth.decrementAndGet();
+            waitTime.record(waitNanos);
+        }
+        activeCount.incrementAndGet();
+    }
+
+    void onFinish(long runNanos) {
+        activeCount.decrementAndGet();
+        completedCount.incrementAndGet();
+        runTime.record(runNanos);
+    }
+
+    void onCancel(boolean queued) {
+        cancelledCount.incrementAndGet();
+        if (queued) queueDepth.decrementAndGet();
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return name + "{queued=" + queueDepth() + ", active=" + activeCount()
+                + ", submitted=" + submittedCount() + ", completed=" + completedCount()
+                + ", rejected=" + rejectedCount() + ", cancelled=" + cancelledCount()
+                + ", wait.p50=" + waitTime.percentile(0.5) + "ns, wait.p99=" + waitTime.percentile(0.99)
+                + "ns, run.p50=" + runTime.percentile(0.5) + "ns, run.p99=" + runTime.percentile(0.99) + "ns}";
+    }
+}
@@ -11,27 +11,59 @@ public final class Dispatchers {
 
     /// For UI tasks
     public static Dispatcher main() {
-        return Main.INSTANCE;
+        return DispatcherInstrumentation.isEnabled() ? InstrumentedMain.INSTANCE : Main.INSTANCE;
     }
 
-    /// For IO intensive tasks
+    /// For tiny UI tasks, coalesced into one post per batch of at most 8ms
+    public static Dispatcher mainBatching() {
+        return DispatcherInstrumentation.isEnabled() ? InstrumentedMainBatching.INSTANCE : MainBatching.INSTANCE;
+    }
+
+    public static Dispatcher batching(@NonNull Dispatcher parent, long budgetMillis) {
+        return new BatchingDispatcher(parent, budgetMillis);
+    }
+
+    /// For IO intensive tasks, bounded if DispatchExecutors.setBoundedElastic(true)
     public static Dispatcher elastic() {
-        return Elastic.INSTANCE;
+        if (DispatchExecutors.isBoundedElastic()) return boundedElastic();
+        return DispatcherInstrumentation.isEnabled() ? InstrumentedElastic.INSTANCE : Elastic.INSTANCE;
+    }
+
+    /// For IO intensive tasks, with thread cap and bounded queue
+    public static Dispatcher boundedElastic() {
+        return DispatcherInstrumentation.isEnabled() ? InstrumentedBoundedElastic.INSTANCE
+                : BoundedElastic.INSTANCE;
+    }
+
+    /// For blocking IO tasks, a virtual thread per task if supported, otherwise bounded elastic,
+    /// delays are scheduled by a hashed wheel timer of 10ms tick
+    public static Dispatcher virtual() {
+        return DispatcherInstrumentation.isEnabled() ? InstrumentedVirtual.INSTANCE : Virtual.INSTANCE;
     }
 
     /// For CPU intensive tasks
     public static Dispatcher parallel() {
-        return Parallel.INSTANCE;
+        return DispatcherInstrumentation.isEnabled() ? InstrumentedParallel.INSTANCE : Parallel.INSTANCE;
+    }
+
+    /// For CPU intensive small tasks, with work stealing
+    public static Dispatcher forkJoin() {
+        return DispatcherInstrumentation.isEnabled() ? InstrumentedForkJoin.INSTANCE : ForkJoin.INSTANCE;
     }
 
     public static Dispatcher single() {
-        return Single.INSTANCE;
+        return DispatcherInstrumentation.isEnabled() ? InstrumentedSingle.INSTANCE : Single.INSTANCE;
     }
 
     public static Dispatcher newSingle() {
         return new ExecutorLooperDispatcher(DispatchExecutors.newSingle(), Looper.getMainLooper());
     }
 
+    /// For ordered tasks, runs them one at a time in FIFO order on the shared threads of parent
+    public static Dispatcher serial(@NonNull Dispatcher parent) {
+        return new SerialDispatcher(parent);
+    }
+
     public static Dispatcher withLooper(@NonNull Looper looper) {
         return new LooperDispatcher(looper);
     }
@@ -48,21 +80,97 @@ public final class Dispatchers {
         return new ScheduledExecutorDispatcher(executor);
     }
 
+    /// For massive timeouts, scheduled by a hashed wheel timer of 10ms tick
+    public static Dispatcher wheel() {
+        return DispatcherInstrumentation.isEnabled() ? InstrumentedWheel.INSTANCE : Wheel.INSTANCE;
+    }
+
+    /// Starts a worker thread on first use, stop it once done
+    public static HashedWheelDispatcher withHashedWheel(@NonNull ExecutorService executor, long tickMillis,
+                                                        int ticksPerWheel) {
+        return new HashedWheelDispatcher(executor, tickMillis, ticksPerWheel);
+    }
+
+    /// Records metrics of the tasks dispatched through dispatcher, named in DispatcherInstrumentation
+    public static Dispatcher instrument(@NonNull String name, @NonNull Dispatcher dispatcher) {
+        return DispatcherInstrumentation.instrument(name, dispatcher);
+    }
+
     private static class Main {
         private static final Dispatcher INSTANCE = withLooper(Looper.getMainLooper());
     }
 
+    private static class MainBatching {
+        private static final Dispatcher INSTANCE = new BatchingDispatcher(Main.INSTANCE);
+    }
+
     private static class Elastic {
-        private static final Dispatcher INSTANCE = withExecutor(DispatchExecutors.elastic(),
+        private static final Dispatcher INSTANCE = withExecutor(DispatchExecutors.unboundedElastic(),
+                Looper.getMainLooper());
+    }
+
+    private static class BoundedElastic {
+        private static final Dispatcher INSTANCE = withExecutor(DispatchExecutors.boundedElastic(),
                 Looper.getMainLooper());
     }
 
+    private static class Virtual {
+        private static final Dispatcher INSTANCE = new HashedWheelDispatcher(DispatchExecutors.virtual());
+    }
+
     private static class Parallel {
         private static final Dispatcher INSTANCE = withExecutor(DispatchExecutors.parallel(),
                 Looper.getMainLooper());
     }
 
+    private static class ForkJoin {
+        private static final Dispatcher INSTANCE = withExecutor(DispatchExecutors.forkJoin(),
+                Looper.getMainLooper());
+    }
+
     private static class Single {
         private static final Dispatcher INSTANCE = newSingle();
     }
+
+    static class Wheel {
+        static final Dispatcher INSTANCE = new HashedWheelDispatcher(DispatchExecutors.elastic());
+    }
+
+    // each wraps the shared dispatcher on first use while enabled,
+    // only the tasks dispatched while enabled are recorded
+    private static class InstrumentedMain {
+        private static final Dispatcher INSTANCE = instrument("main", Main.INSTANCE);
+    }
+
+    private static class InstrumentedMainBatching {
+        private static final Dispatcher INSTANCE = instrument("mainBatching", MainBatching.INSTANCE);
+    }
+
+    private static class InstrumentedElastic {
+        private static final Dispatcher INSTANCE = instrument("elastic", Elastic.INSTANCE);
+    }
+
+    private static class InstrumentedBoundedElastic {
+        private static final Dispatcher INSTANCE = instrument("boundedElastic", BoundedElastic.INSTANCE);
+    }
+
+    private static class InstrumentedVirtual {
+        private static final Dispatcher INSTANCE = instrument("virtual", Virtual.INSTANCE);
+    }
+
+    private static class InstrumentedParallel {
+        private static final Dispatcher INSTANCE = instrument("parallel", Parallel.INSTANCE);
+    }
+
+    private static class InstrumentedForkJoin {
+        private static final Dispatcher INSTANCE = instrument("forkJoin", ForkJoin.INSTANCE);
+    }
+
+    private static class InstrumentedSingle {
+        private static final Dispatcher INSTANCE = instrument("single", Single.INSTANCE);
+    }
+
+    private static class InstrumentedWheel {
+        private static final Dispatcher INSTANCE = instrument("wheel", Wheel.INSTANCE);
+    }
 }
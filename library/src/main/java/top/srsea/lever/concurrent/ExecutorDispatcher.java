@@ -1,20 +1,25 @@
 package top.srsea.lever.concurrent;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
-import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
-public class ExecutorDispatcher implements Dispatcher {
+public class ExecutorDispatcher extends AbstractDispatcher {
     private static final ScheduledExecutorService SCHEDULER =
             new ScheduledThreadPoolExecutor(1);
 
+    private static final int IDLE = 0;
+    private static final int QUEUED = 1;
+    private static final int RUNNING = 2;
+    private static final int CANCELLED = 3;
+
     private final ExecutorService executor;
 
     public ExecutorDispatcher(@NonNull ExecutorService executor) {
@@ -31,40 +36,70 @@ public class ExecutorDispatcher implements Dispatcher {
     @Override
     public Cancellable dispatch(long delayMillis, @NonNull Runnable task) {
         Task delayedTask = new Task(task);
-        delayedTask.futures.add(SCHEDULER.schedule(delayedTask, delayMillis, TimeUnit.MILLISECONDS));
+        delayedTask.setSchedule(SCHEDULER.schedule(delayedTask, delayMillis, TimeUnit.MILLISECONDS));
         return delayedTask;
     }
 
-    @NonNull
     @Override
-    public Cancellable dispatch(long delayMillis, long periodMillis, @NonNull Runnable task) {
-        Task periodTask = new Task(task);
-        periodTask.futures.add(SCHEDULER.scheduleAtFixedRate(periodTask,
-                delayMillis, periodMillis, TimeUnit.MILLISECONDS));
-        return periodTask;
+    protected void postDelayed(@NonNull Timer timer, long delayMillis) {
+        timerHandler().postDelayed(timer, delayMillis);
+    }
+
+    @Override
+    protected void removeCallbacks(@NonNull Timer timer) {
+        timerHandler().removeCallbacks(timer);
+    }
+
+    @Override
+    protected void execute(@NonNull Timer timer) {
+        executor.execute(timer.tick);
     }
 
+    /// Idle -> queued on the executor -> running -> idle, or cancelled from any state.
     private class Task implements Runnable, Cancellable {
         final Runnable inner;
-        final List<Future<?>> futures = new LinkedList<>();
+        final AtomicInteger state = new AtomicInteger(IDLE);
+        final Runnable body = new Runnable() {
+            @Override
+            public void run() {
+                if (!state.compareAndSet(QUEUED, RUNNING)) return;
+                try {
+                    inner.run();
+                } finally {
+                    state.compareAndSet(RUNNING, IDLE);
+                }
+            }
+        };
+        @Nullable
+        volatile Future<?> schedule;
 
         Task(@NonNull Runnable inner) {
             this.inner = inner;
         }
 
+        void setSchedule(@NonNull Future<?> schedule) {
+            this.schedule = schedule;
+            // cancelled before the schedule is set
+            if (state.get() == CANCELLED) schedule.cancel(false);
+        }
+
         @Override
         public void run() {
-            futures.add(executor.submit(inner));
-            for (Iterator<Future<?>> it = futures.iterator(); it.hasNext(); ) {
-                if (it.next().isDone()) it.remove();
+            if (!state.compareAndSet(IDLE, QUEUED)) return;
+            try {
+                // submitted, so that a throwing task is kept in the future instead of killing the thread
+                executor.submit(body);
+            } catch (RejectedExecutionException e) {
+                state.compareAndSet(QUEUED, IDLE);
+                throw e;
             }
         }
 
         @Override
         public void cancel() {
-            for (Future<?> future : futures) {
-                future.cancel(false);
-            }
+            state.set(CANCELLED);
+            Future<?> schedule = this.schedule;
+            if (schedule != null) schedule.cancel(false);
         }
     }
 }
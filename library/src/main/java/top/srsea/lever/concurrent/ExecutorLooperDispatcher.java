@@ -32,6 +32,21 @@ public class ExecutorLooperDispatcher extends AbstractDispatcher {
         return delayedTask;
     }
 
+    @Override
+    protected void postDelayed(@NonNull Timer timer, long delayMillis) {
+        handler.postDelayed(timer, delayMillis);
+    }
+
+    @Override
+    protected void removeCallbacks(@NonNull Timer timer) {
+        handler.removeCallbacks(timer);
+    }
+
+    @Override
+    protected void execute(@NonNull Timer timer) {
+        executor.execute(timer.tick);
+    }
+
     private class DelayedTask implements Runnable, Cancellable {
         final Runnable inner;
         @Nullable
@@ -0,0 +1,323 @@
+package top.srsea.lever.concurrent;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+/// Schedules delayed tasks on a hashed wheel timer, O(1) to schedule and cancel,
+/// and runs expired tasks on the executor. Delays are rounded up to the tick.
+public class HashedWheelDispatcher extends AbstractDispatcher {
+    private static final long DEFAULT_TICK_MILLIS = 10;
+    private static final int DEFAULT_TICKS_PER_WHEEL = 512;
+    private static final int MAX_TRANSFERS_PER_TICK = 100000;
+
+    private static final int INIT = 0;
+    private static final int CANCELLED = 1;
+    private static final int EXPIRED = 2;
+
+    private static final AtomicIntegerFieldUpdater<Timeout> STATE =
+            AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "state");
+
+    private final ExecutorService executor;
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final long startNanos = System.nanoTime();
+    private final Queue<Timeout> timeouts = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> cancelledTimeouts = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean started = new AtomicBoolean();
+    private final AtomicBoolean stopped = new AtomicBoolean();
+    private final Thread worker;
+    private volatile boolean idle;
+
+    public HashedWheelDispatcher(@NonNull ExecutorService executor) {
+        this(executor, DEFAULT_TICK_MILLIS, DEFAULT_TICKS_PER_WHEEL);
+    }
+
+    public HashedWheelDispatcher(@NonNull ExecutorService executor, long tickMillis, int ticksPerWheel) {
+        if (tickMillis <= 0) {
+            throw new IllegalArgumentException("tickMillis must be positive: " + tickMillis);
+        }
+        if (ticksPerWheel <= 0 || ticksPerWheel > 1 << 30) {
+            throw new IllegalArgumentException("ticksPerWheel out of range: " + ticksPerWheel);
+        }
+        this.executor = executor;
+        tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        int length = Integer.highestOneBit(ticksPerWheel);
+        if (length < ticksPerWheel) length <<= 1;
+        wheel = new Bucket[length];
+        for (int i = 0; i < length; ++i) {
+            wheel[i] = new Bucket();
+        }
+        mask = length - 1;
+        worker = new Thread(new Worker(), "HashedWheelDispatcher");
+        worker.setDaemon(true);
+    }
+
+    @NonNull
+    @Override
+    public Cancellable dispatch(@NonNull Runnable task) {
+        return new FutureCancellable(executor.submit(task));
+    }
+
+    @NonNull
+    @Override
+    public Cancellable dispatch(long delayMillis, @NonNull Runnable task) {
+        if (delayMillis <= 0) {
+            return dispatch(task);
+        }
+        if (stopped.get()) {
+            throw new RejectedExecutionException("HashedWheelDispatcher has been stopped");
+        }
+        Timeout timeout = new Timeout(task, deadline(delayMillis), false);
+        schedule(timeout);
+        return timeout;
+    }
+
+    /// Stops the worker thread, returns the delayed tasks not expired yet, which will never run.
+    /// A stopped dispatcher rejects delayed tasks, and periodic tasks end with it.
+    @NonNull
+    public List<Runnable> stop() {
+        if (!stopped.compareAndSet(false, true)) return Collections.emptyList();
+        if (started.get() && Thread.currentThread() != worker) {
+            boolean interrupted = false;
+            while (worker.isAlive()) {
+                worker.interrupt();
+                try {
+                    worker.join(100);
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) Thread.currentThread().interrupt();
+        }
+        // the worker has ended, so the buckets are safe to read here
+        List<Runnable> unexpired = new ArrayList<>();
+        for (Bucket bucket : wheel) {
+            for (Timeout timeout = bucket.head; timeout != null; timeout = timeout.next) {
+                if (STATE.compareAndSet(timeout, INIT, CANCELLED) && !timeout.timer) unexpired.add(timeout.task);
+            }
+        }
+        Timeout timeout;
+        while ((timeout = timeouts.poll()) != null) {
+            if (STATE.compareAndSet(timeout, INIT, CANCELLED) && !timeout.timer) unexpired.add(timeout.task);
+        }
+        return unexpired;
+    }
+
+    @Override
+    protected void postDelayed(@NonNull Timer timer, long delayMillis) {
+        if (stopped.get()) return;
+        Timeout timeout = (Timeout) timer.postHandle;
+        if (timeout == null) {
+            timeout = new Timeout(timer, deadline(delayMillis), true);
+            timer.postHandle = timeout;
+        } else {
+            // the timer has fired, so its timeout is out of the wheel and can be added again
+            timeout.deadline = deadline(delayMillis);
+            timeout.state = INIT;
+        }
+        schedule(timeout);
+    }
+
+    @Override
+    protected void removeCallbacks(@NonNull Timer timer) {
+        Timeout timeout = (Timeout) timer.postHandle;
+        if (timeout != null) timeout.cancel();
+    }
+
+    @Override
+    protected void execute(@NonNull Timer timer) {
+        executor.execute(timer.tick);
+    }
+
+    private long deadline(long delayMillis) {
+        return System.nanoTime() - startNanos + TimeUnit.MILLISECONDS.toNanos(Math.max(delayMillis, 0));
+    }
+
+    private void schedule(@NonNull Timeout timeout) {
+        if (!started.get() && started.compareAndSet(false, true)) {
+            worker.start();
+        }
+        timeouts.add(timeout);
+        if (idle) {
+            LockSupport.unpark(worker);
+        }
+    }
+
+    private class Worker implements Runnable {
+        long tick;
+        int size;
+
+        @Override
+        public void run() {
+            while (!stopped.get()) {
+                removeCancelled();
+                if (size == 0 && timeouts.isEmpty()) {
+                    idle = true;
+                    while (timeouts.isEmpty() && !stopped.get()) {
+                        LockSupport.park(this);
+                    }
+                    idle = false;
+                    // all buckets are empty, skip the ticks elapsed while idle
+                    tick = (System.nanoTime() - startNanos) / tickNanos;
+                }
+                long deadline = waitForNextTick();
+                if (stopped.get()) return;
+                removeCancelled();
+                transfer();
+                expire(wheel[(int) (tick & mask)], deadline);
+                ++tick;
+            }
+        }
+
+        private long waitForNextTick() {
+            long deadline = tickNanos * (tick + 1);
+            while (true) {
+                long sleepMillis = (deadline - (System.nanoTime() - startNanos) + 999999) / 1000000;
+                if (sleepMillis <= 0) return deadline;
+                try {
+                    Thread.sleep(sleepMillis);
+                } catch (InterruptedException e) {
+                    if (stopped.get()) return deadline;
+                }
+            }
+        }
+
+        private void transfer() {
+            for (int i = 0; i < MAX_TRANSFERS_PER_TICK; ++i) {
+                Timeout timeout = timeouts.poll();
+                if (timeout == null) return;
+                if (timeout.state == CANCELLED) continue;
+                long calculated = timeout.deadline / tickNanos;
+                timeout.rounds = (calculated - tick) / wheel.length;
+                wheel[(int) (Math.max(calculated, tick) & mask)].add(timeout);
+                ++size;
+            }
+        }
+
+        private void removeCancelled() {
+            Timeout timeout;
+            while ((timeout = cancelledTimeouts.poll()) != null) {
+                if (timeout.bucket != null) {
+                    timeout.bucket.remove(timeout);
+                    --size;
+                }
+            }
+        }
+
+        private void expire(Bucket bucket, long deadline) {
+            Timeout timeout = bucket.head;
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                if (timeout.state == CANCELLED) {
+                    bucket.remove(timeout);
+                    --size;
+                } else if (timeout.rounds <= 0 && timeout.deadline <= deadline) {
+                    bucket.remove(timeout);
+                    --size;
+                    timeout.expire();
+                } else {
+                    --timeout.rounds;
+                }
+                timeout = next;
+            }
+        }
+    }
+
+    private static class Bucket {
+        Timeout head;
+        Timeout tail;
+
+        void add(Timeout timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        void remove(Timeout timeout) {
+            Timeout next = timeout.next;
+            if (timeout.prev != null) {
+                timeout.prev.next = next;
+            }
+            if (next != null) {
+                next.prev = timeout.prev;
+            }
+            if (timeout == head) {
+                head = next;
+            }
+            if (timeout == tail) {
+                tail = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+    }
+
+    private class Timeout implements Cancellable {
+        final Runnable task;
+        // a timer is run on the worker, it only hands its tick to the executor
+        final boolean timer;
+        long deadline;
+        volatile int state = INIT;
+        @Nullable
+        volatile Future<?> future;
+
+        // accessed by the worker only
+        long rounds;
+        Bucket bucket;
+        Timeout prev;
+        Timeout next;
+
+        Timeout(@NonNull Runnable task, long deadline, boolean timer) {
+            this.task = task;
+            this.deadline = deadline;
+            this.timer = timer;
+        }
+
+        void expire() {
+            if (!STATE.compareAndSet(this, INIT, EXPIRED)) return;
+            try {
+                if (timer) {
+                    task.run();
+                } else {
+                    future = executor.submit(task);
+                }
+            } catch (RejectedExecutionException e) {
+                // the task is lost, such as by a full queue, reported as any failure of the worker,
+                // which keeps running the other timeouts
+                worker.getUncaughtExceptionHandler().uncaughtException(worker, e);
+            }
+        }
+
+        @Override
+        public void cancel() {
+            if (STATE.compareAndSet(this, INIT, CANCELLED)) {
+                cancelledTimeouts.add(this);
+                return;
+            }
+            Future<?> future = this.future;
+            if (future != null) {
+                future.cancel(false);
+            }
+        }
+    }
+}
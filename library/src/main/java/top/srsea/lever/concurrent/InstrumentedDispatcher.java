@@ -0,0 +1,130 @@
+package top.srsea.lever.concurrent;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/// Records metrics of the tasks dispatched through the delegate
+public class InstrumentedDispatcher implements PeriodicDispatcher {
+    private static final int PENDING = 0;
+    private static final int STARTED = 1;
+    private static final int CANCELLED = 2;
+
+    private final Dispatcher delegate;
+    private final DispatcherMetrics metrics;
+
+    public InstrumentedDispatcher(@NonNull Dispatcher delegate, @NonNull DispatcherMetrics metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    @NonNull
+    public DispatcherMetrics metrics() {
+        return metrics;
+    }
+
+    @NonNull
+    @Override
+    public Cancellable dispatch(@NonNull Runnable task) {
+        Task wrapped = new Task(task, System.nanoTime(), false);
+        metrics.onSubmit(true);
+        try {
+            wrapped.cancellable = delegate.dispatch(wrapped);
+        } catch (RejectedExecutionException e) {
+            metrics.onRejected(true);
+            throw e;
+        }
+        return wrapped;
+    }
+
+    @NonNull
+    @Override
+    public Cancellable dispatch(long delayMillis, @NonNull Runnable task) {
+        Task wrapped = new Task(task,
+                System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(delayMillis, 0)), false);
+        metrics.onSubmit(true);
+        try {
+            wrapped.cancellable = delegate.dispatch(delayMillis, wrapped);
+        } catch (RejectedExecutionException e) {
+            metrics.onRejected(true);
+            throw e;
+        }
+        return wrapped;
+    }
+
+    @NonNull
+    @Override
+    public Cancellable dispatch(long delayMillis, long periodMillis, @NonNull Runnable task) {
+        Task wrapped = new Task(task, 0, true);
+        metrics.onSubmit(false);
+        try {
+            wrapped.cancellable = delegate.dispatch(delayMillis, periodMillis, wrapped);
+        } catch (RejectedExecutionException e) {
+            metrics.onRejected(false);
+            throw e;
+        }
+        return wrapped;
+    }
+
+    /// Supported only if the delegate is a PeriodicDispatcher
+    @NonNull
+    @Override
+    public Cancellable dispatch(long delayMillis, long periodMillis, @NonNull PeriodMode mode,
+                                @NonNull MissedTickPolicy policy, @NonNull Runnable task) {
+        if (!(delegate instanceof PeriodicDispatcher)) {
+            throw new UnsupportedOperationException("delegate is not a PeriodicDispatcher: " + delegate);
+        }
+        Task wrapped = new Task(task, 0, true);
+        metrics.onSubmit(false);
+        try {
+            wrapped.cancellable = ((PeriodicDispatcher) delegate).dispatch(delayMillis, periodMillis, mode,
+                    policy, wrapped);
+        } catch (RejectedExecutionException e) {
+            metrics.onRejected(false);
+            throw e;
+        }
+        return wrapped;
+    }
+
+    private class Task implements Runnable, Cancellable {
+        final Runnable inner;
+        final long dueNanos;
+        final boolean periodic;
+        final AtomicInteger state = new AtomicInteger(PENDING);
+        volatile Cancellable cancellable;
+
+        Task(@NonNull Runnable inner, long dueNanos, boolean periodic) {
+            this.inner = inner;
+            this.dueNanos = dueNanos;
+            this.periodic = periodic;
+        }
+
+        @Override
+        public void run() {
+            if (periodic) {
+                if (state.get() == CANCELLED) return;
+                metrics.onStart(false, 0);
+            } else {
+                if (!state.compareAndSet(PENDING, STARTED)) return;
+                metrics.onStart(true, System.nanoTime() - dueNanos);
+            }
+            long startNanos = System.nanoTime();
+            try {
+                inner.run();
+            } finally {
+                metrics.onFinish(System.nanoTime() - startNanos);
+            }
+        }
+
+        @Override
+        public void cancel() {
+            if (state.compareAndSet(PENDING, CANCELLED)) {
+                metrics.onCancel(!periodic);
+            }
+            Cancellable cancellable = this.cancellable;
+            if (cancellable != null) cancellable.cancel();
+        }
+    }
+}
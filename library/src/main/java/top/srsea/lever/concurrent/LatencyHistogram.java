@@ -0,0 +1,55 @@
+package top.srsea.lever.concurrent;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/// A lock-free histogram of durations in nanoseconds, bucketed by powers of two,
+/// percentiles are accurate within a factor of two.
+public class LatencyHistogram {
+    private static final int BUCKETS = 64;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        buckets.incrementAndGet(63 - Long.numberOfLeadingZeros(nanos | 1));
+        count.incrementAndGet();
+        sum.addAndGet(nanos);
+        long current;
+        do {
+            current = max.get();
+            if (nanos <= current) return;
+        } while (!max.compareAndSet(current, nanos));
+    }
+
+    public long count() {
+        return count.get();
+    }
+
+    public long mean() {
+        long count = this.count.get();
+        return count == 0 ? 0 : sum.get() / count;
+    }
+
+    public long max() {
+        return max.get();
+    }
+
+    /// Upper bound of the bucket holding the percentile, e.g. percentile(0.99)
+    public long percentile(double percentile) {
+        long count = this.count.get();
+        if (count == 0) return 0;
+        long rank = (long) Math.ceil(percentile * count);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; ++i) {
+            seen += buckets.get(i);
+            if (seen >= rank) {
+                return Math.min(i == 62 ? Long.MAX_VALUE : (2L << i) - 1, max.get());
+            }
+        }
+        return max.get();
+    }
+}
@@ -23,4 +23,14 @@ public class LooperDispatcher extends AbstractDispatcher {
             }
         };
     }
+
+    @Override
+    protected void postDelayed(@NonNull Timer timer, long delayMillis) {
+        handler.postDelayed(timer, delayMillis);
+    }
+
+    @Override
+    protected void removeCallbacks(@NonNull Timer timer) {
+        handler.removeCallbacks(timer);
+    }
 }
@@ -0,0 +1,7 @@
+package top.srsea.lever.concurrent;
+
+import androidx.annotation.NonNull;
+
+public interface MetricsSink {
+    void report(@NonNull DispatcherMetrics metrics);
+}
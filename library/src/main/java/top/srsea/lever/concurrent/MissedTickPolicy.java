@@ -0,0 +1,10 @@
+package top.srsea.lever.concurrent;
+
+public enum MissedTickPolicy {
+    /// Runs the late tick once and drops the ticks missed meanwhile, resumes at the next aligned tick
+    SKIP,
+    /// Runs once for all missed ticks, then resumes at the next aligned tick
+    COALESCE,
+    /// Runs once for each missed tick back to back, then resumes at the next aligned tick
+    BURST
+}
@@ -0,0 +1,8 @@
+package top.srsea.lever.concurrent;
+
+public enum PeriodMode {
+    /// Ticks are aligned to the start, runs late do not shift the following ticks
+    FIXED_RATE,
+    /// Each tick is a period after the end of the previous run
+    FIXED_DELAY
+}
@@ -0,0 +1,12 @@
+package top.srsea.lever.concurrent;
+
+import androidx.annotation.NonNull;
+
+/// A dispatcher with control over how the ticks of a periodic task are scheduled
+public interface PeriodicDispatcher extends Dispatcher {
+
+    /// Runs of a periodic task never overlap, ticks missed in FIXED_RATE mode are handled by the policy
+    @NonNull
+    Cancellable dispatch(long delayMillis, long periodMillis, @NonNull PeriodMode mode,
+                         @NonNull MissedTickPolicy policy, @NonNull Runnable task);
+}
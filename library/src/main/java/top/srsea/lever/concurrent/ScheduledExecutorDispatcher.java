@@ -5,7 +5,7 @@ import androidx.annotation.NonNull;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
-public class ScheduledExecutorDispatcher implements Dispatcher {
+public class ScheduledExecutorDispatcher extends AbstractDispatcher {
     private final ScheduledExecutorService executor;
 
     public ScheduledExecutorDispatcher(@NonNull ScheduledExecutorService executor) {
@@ -24,10 +24,18 @@ public class ScheduledExecutorDispatcher implements Dispatcher {
         return new FutureCancellable(executor.schedule(task, delayMillis, TimeUnit.MILLISECONDS));
     }
 
-    @NonNull
     @Override
-    public Cancellable dispatch(long delayMillis, long periodMillis, @NonNull Runnable task) {
-        return new FutureCancellable(executor.scheduleAtFixedRate(task, delayMillis, periodMillis,
-                TimeUnit.MILLISECONDS));
+    protected void postDelayed(@NonNull Timer timer, long delayMillis) {
+        timerHandler().postDelayed(timer, delayMillis);
+    }
+
+    @Override
+    protected void removeCallbacks(@NonNull Timer timer) {
+        timerHandler().removeCallbacks(timer);
+    }
+
+    @Override
+    protected void execute(@NonNull Timer timer) {
+        executor.execute(timer.tick);
     }
 }
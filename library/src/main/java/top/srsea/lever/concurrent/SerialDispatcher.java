@@ -0,0 +1,193 @@
+package top.srsea.lever.concurrent;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/// Runs tasks one at a time in FIFO order on the parent dispatcher,
+/// many serial dispatchers can share the threads of one parent.
+public class SerialDispatcher extends AbstractDispatcher {
+    private static final int MAX_TASKS_PER_DRAIN = 64;
+
+    private final Dispatcher parent;
+    private final int maxTasksPerDrain;
+    private final long maxNanosPerDrain;
+    private final AtomicReference<Node> tail;
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final Runnable drain = new Runnable() {
+        @Override
+        public void run() {
+            boolean drained = false;
+            long startNanos = System.nanoTime();
+            try {
+                for (int i = 0; i < maxTasksPerDrain; ++i) {
+                    Node node = poll();
+                    if (node == null) {
+                        drained = true;
+                        break;
+                    }
+                    node.runTask();
+                    if (System.nanoTime() - startNanos >= maxNanosPerDrain) break;
+                }
+            } finally {
+                // yields to other tasks of the parent after a batch, or after a task throws
+                if (!drained || reschedule()) schedule();
+            }
+        }
+    };
+    // accessed by the draining thread only
+    private Node head;
+
+    public SerialDispatcher(@NonNull Dispatcher parent) {
+        this(parent, MAX_TASKS_PER_DRAIN, Long.MAX_VALUE);
+    }
+
+    /// A drain yields to the parent once it runs out of either count or time
+    protected SerialDispatcher(@NonNull Dispatcher parent, int maxTasksPerDrain, long maxNanosPerDrain) {
+        this.parent = parent;
+        this.maxTasksPerDrain = maxTasksPerDrain;
+        this.maxNanosPerDrain = maxNanosPerDrain;
+        head = new Node(null);
+        tail = new AtomicReference<>(head);
+    }
+
+    @NonNull
+    @Override
+    public Cancellable dispatch(@NonNull Runnable task) {
+        Node node = new Node(task);
+        offer(node);
+        return node;
+    }
+
+    @NonNull
+    @Override
+    public Cancellable dispatch(long delayMillis, @NonNull Runnable task) {
+        if (delayMillis <= 0) {
+            return dispatch(task);
+        }
+        final Node node = new Node(task);
+        node.timer = parent.dispatch(delayMillis, new Runnable() {
+            @Override
+            public void run() {
+                offer(node);
+            }
+        });
+        return node;
+    }
+
+    @Override
+    protected void postDelayed(@NonNull Timer timer, long delayMillis) {
+        if (parent instanceof AbstractDispatcher) {
+            // posted by the parent, the tick is then executed here
+            ((AbstractDispatcher) parent).postDelayed(timer, delayMillis);
+        } else {
+            super.postDelayed(timer, delayMillis);
+        }
+    }
+
+    @Override
+    protected void removeCallbacks(@NonNull Timer timer) {
+        if (parent instanceof AbstractDispatcher) {
+            ((AbstractDispatcher) parent).removeCallbacks(timer);
+        }
+    }
+
+    @Override
+    protected void execute(@NonNull Timer timer) {
+        // ticks never overlap, so two nodes take turns: the next tick is offered only after
+        // the previous one has been polled, which then leaves the other node out of the queue
+        Node node = (Node) timer.executeHandle;
+        if (node == null) {
+            node = new Node(null);
+            node.twin = new Node(null);
+            node.twin.twin = node;
+        }
+        timer.executeHandle = node.twin;
+        node.next = null;
+        node.cancelled = false;
+        node.task = timer.tick;
+        try {
+            offer(node);
+        } catch (RejectedExecutionException e) {
+            // the node stays queued until the next drain, so the next tick takes a new pair
+            timer.executeHandle = null;
+            throw e;
+        }
+    }
+
+    private void offer(@NonNull Node node) {
+        if (node.cancelled) return;
+        tail.getAndSet(node).next = node;
+        if (!scheduled.get() && scheduled.compareAndSet(false, true)) {
+            try {
+                schedule();
+            } catch (RejectedExecutionException e) {
+                // rejected along with the drain, the tasks queued before are left for the next offer
+                node.cancelled = true;
+                throw e;
+            }
+        }
+    }
+
+    private void schedule() {
+        try {
+            parent.dispatch(drain);
+        } catch (RejectedExecutionException e) {
+            // otherwise no later offer would schedule a drain again
+            scheduled.set(false);
+            throw e;
+        }
+    }
+
+    @Nullable
+    private Node poll() {
+        Node current = head;
+        Node next = current.next;
+        while (next == null) {
+            if (tail.get() == current) return null;
+            // a producer has swapped the tail but not linked the node yet
+            Thread.yield();
+            next = current.next;
+        }
+        head = next;
+        return next;
+    }
+
+    private boolean reschedule() {
+        scheduled.set(false);
+        return (head.next != null || tail.get() != head) && scheduled.compareAndSet(false, true);
+    }
+
+    private static class Node implements Cancellable {
+        @Nullable
+        Runnable task;
+        volatile Node next;
+        volatile boolean cancelled;
+        @Nullable
+        volatile Cancellable timer;
+        // the other node of a periodic task
+        @Nullable
+        Node twin;
+
+        Node(@Nullable Runnable task) {
+            this.task = task;
+        }
+
+        void runTask() {
+            Runnable task = this.task;
+            // the node becomes the head, drops the task to release it
+            this.task = null;
+            if (task != null && !cancelled) task.run();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            Cancellable timer = this.timer;
+            if (timer != null) timer.cancel();
+        }
+    }
+}
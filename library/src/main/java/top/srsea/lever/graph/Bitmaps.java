@@ -105,8 +105,7 @@ public class Bitmaps {
      * @return an observable bitmap from the URL
      */
     public static Single<Bitmap> fromUrl(final String url, OkHttpClient client) {
-        return RetrofitProvider.get(client)
-                .create(DownloadService.class)
+        return RetrofitProvider.create(client, DownloadService.class)
                 .download(url)
                 .map(new Function<ResponseBody, Bitmap>() {
                     @Override
@@ -121,12 +120,13 @@ public class Bitmaps {
     }
 
     /**
-     * Fetches a bitmap from the URL.
+     * Fetches a bitmap from the URL with the shared client.
      *
      * @param url the URL to image file
      * @return an observable bitmap from the URL
+     * @see RetrofitProvider#client()
      */
     public static Single<Bitmap> fromUrl(final String url) {
-        return fromUrl(url, new OkHttpClient());
+        return fromUrl(url, RetrofitProvider.client());
     }
 }
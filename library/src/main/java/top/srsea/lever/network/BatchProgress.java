@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2019 sea
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package top.srsea.lever.network;
+
+/**
+ * An aggregate progress of a batch download, counts files besides bytes.
+ *
+ * @author sea
+ */
+public class BatchProgress extends Progress {
+
+    /**
+     * Count of files in the batch.
+     */
+    private final int count;
+
+    /**
+     * Count of files downloaded.
+     */
+    private final int completed;
+
+    /**
+     * Count of files failed.
+     */
+    private final int failed;
+
+    /**
+     * Constructs an instance.
+     *
+     * @param current   bytes read of all files
+     * @param total     bytes total of all started files
+     * @param count     count of files in the batch
+     * @param completed count of files downloaded
+     * @param failed    count of files failed
+     */
+    public BatchProgress(long current, long total, int count, int completed, int failed) {
+        super(current, total);
+        this.count = count;
+        this.completed = completed;
+        this.failed = failed;
+    }
+
+    /**
+     * Gets the count of files in the batch.
+     *
+     * @return count of files
+     */
+    public int count() {
+        return count;
+    }
+
+    /**
+     * Gets the count of files downloaded.
+     *
+     * @return count of files downloaded
+     */
+    public int completed() {
+        return completed;
+    }
+
+    /**
+     * Gets the count of files failed.
+     *
+     * @return count of files failed
+     */
+    public int failed() {
+        return failed;
+    }
+
+    /**
+     * Returns a value whether all files have been finished, downloaded or failed.
+     *
+     * @return {@code true} if finished
+     */
+    public boolean isFinished() {
+        return completed + failed >= count;
+    }
+
+    /**
+     * Returns a copy of this progress.
+     *
+     * @return a copy of this progress
+     */
+    @Override
+    public BatchProgress copy() {
+        BatchProgress copy = new BatchProgress(current(), total(), count, completed, failed);
+        copy.setDecoded(decoded());
+        copy.setSpeed(speed());
+        copy.setEta(eta());
+        copy.setRetries(retries());
+        return copy;
+    }
+}
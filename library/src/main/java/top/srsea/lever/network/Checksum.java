@@ -0,0 +1,254 @@
+/*
+ * Copyright (C) 2019 sea
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package top.srsea.lever.network;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+import java.util.zip.CRC32;
+
+import javax.annotation.Nonnull;
+
+import top.srsea.torque.common.IOHelper;
+
+/**
+ * An expected checksum of a download, verified as bytes stream past.
+ *
+ * @author sea
+ * @see DownloadTask.Builder#checksum(Checksum)
+ */
+public class Checksum {
+
+    /**
+     * Algorithm name of CRC32.
+     */
+    public static final String CRC32 = "CRC32";
+
+    /**
+     * Algorithm name, {@link #CRC32} or a {@link MessageDigest} algorithm.
+     */
+    private final String algorithm;
+
+    /**
+     * Expected checksum in lower case hex.
+     */
+    private final String expected;
+
+    /**
+     * Constructs an instance.
+     *
+     * @param algorithm algorithm name
+     * @param expected  expected checksum in hex
+     */
+    private Checksum(String algorithm, String expected) {
+        this.algorithm = algorithm;
+        this.expected = expected.trim().toLowerCase(Locale.US);
+    }
+
+    /**
+     * Creates an expected checksum of the specific algorithm.
+     *
+     * @param algorithm {@link #CRC32} or a {@link MessageDigest} algorithm, such as {@code SHA-256}
+     * @param expected  expected checksum in hex
+     * @return expected checksum
+     * @throws IllegalArgumentException if the algorithm is not supported
+     */
+    public static Checksum of(@Nonnull String algorithm, @Nonnull String expected) {
+        Checksum checksum = new Checksum(algorithm, expected);
+        checksum.newVerifier();
+        return checksum;
+    }
+
+    /**
+     * Creates an expected SHA-256 checksum.
+     *
+     * @param expected expected checksum in hex
+     * @return expected checksum
+     */
+    public static Checksum sha256(@Nonnull String expected) {
+        return of("SHA-256", expected);
+    }
+
+    /**
+     * Creates an expected MD5 checksum.
+     *
+     * @param expected expected checksum in hex
+     * @return expected checksum
+     */
+    public static Checksum md5(@Nonnull String expected) {
+        return of("MD5", expected);
+    }
+
+    /**
+     * Creates an expected CRC32 checksum.
+     *
+     * @param expected expected checksum in hex
+     * @return expected checksum
+     */
+    public static Checksum crc32(@Nonnull String expected) {
+        return of(CRC32, expected);
+    }
+
+    /**
+     * Gets the algorithm name.
+     *
+     * @return algorithm name
+     */
+    public String algorithm() {
+        return algorithm;
+    }
+
+    /**
+     * Gets the expected checksum.
+     *
+     * @return expected checksum in lower case hex
+     */
+    public String expected() {
+        return expected;
+    }
+
+    /**
+     * Creates a verifier to compute the checksum of written bytes.
+     *
+     * @return new verifier
+     */
+    Verifier newVerifier() {
+        if (CRC32.equalsIgnoreCase(algorithm)) {
+            return new Crc32Verifier();
+        }
+        try {
+            return new DigestVerifier(MessageDigest.getInstance(algorithm));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalArgumentException("unsupported algorithm: " + algorithm, e);
+        }
+    }
+
+    /**
+     * Verifies the checksum of the file by reading it, deletes the file if mismatched.
+     *
+     * @param file the file to verify
+     * @throws IOException if failed to read, or mismatched
+     */
+    void verify(File file) throws IOException {
+        Verifier verifier = newVerifier();
+        InputStream in = new FileInputStream(file);
+        try {
+            byte[] buffer = new byte[64 * 1024];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                verifier.write(buffer, 0, n);
+            }
+        } finally {
+            IOHelper.close(in);
+        }
+        verify(verifier, file);
+    }
+
+    /**
+     * Verifies the checksum computed by the verifier, deletes the file if mismatched.
+     *
+     * @param verifier the verifier fed with all bytes of the file
+     * @param file     the file to delete if mismatched
+     * @throws IOException if mismatched
+     */
+    void verify(Verifier verifier, File file) throws IOException {
+        try {
+            verify(verifier);
+        } catch (IOException e) {
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+            throw e;
+        }
+    }
+
+    /**
+     * Verifies the checksum computed by the verifier.
+     *
+     * @param verifier the verifier fed with all bytes
+     * @throws IOException if mismatched
+     */
+    void verify(Verifier verifier) throws IOException {
+        String actual = verifier.checksum();
+        if (!expected.equals(actual)) {
+            throw new ChecksumMismatchException(algorithm + " mismatch, expected: " + expected + ", actual: " + actual);
+        }
+    }
+
+    /**
+     * An output stream computes the checksum of written bytes.
+     */
+    abstract static class Verifier extends OutputStream {
+
+        @Override
+        public void write(int b) {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public abstract void write(@Nonnull byte[] b, int off, int len);
+
+        /**
+         * Returns the checksum of written bytes.
+         *
+         * @return checksum in lower case hex
+         */
+        abstract String checksum();
+    }
+
+    /**
+     * A verifier of {@link MessageDigest}.
+     */
+    private static class DigestVerifier extends Verifier {
+        final MessageDigest digest;
+
+        DigestVerifier(MessageDigest digest) {
+            this.digest = digest;
+        }
+
+        @Override
+        public void write(@Nonnull byte[] b, int off, int len) {
+            digest.update(b, off, len);
+        }
+
+        @Override
+        String checksum() {
+            return DownloadCache.hex(digest.digest());
+        }
+    }
+
+    /**
+     * A verifier of {@link java.util.zip.CRC32}.
+     */
+    private static class Crc32Verifier extends Verifier {
+        final CRC32 crc32 = new CRC32();
+
+        @Override
+        public void write(@Nonnull byte[] b, int off, int len) {
+            crc32.update(b, off, len);
+        }
+
+        @Override
+        String checksum() {
+            return String.format(Locale.US, "%08x", crc32.getValue());
+        }
+    }
+}
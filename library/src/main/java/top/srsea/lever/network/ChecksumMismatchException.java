@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2019 sea
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package top.srsea.lever.network;
+
+import java.io.IOException;
+
+/**
+ * Thrown if the checksum of a downloaded file does not match the expected one.
+ *
+ * <p>Never retried, since the server is expected to serve the same bytes again.
+ *
+ * @author sea
+ */
+public class ChecksumMismatchException extends IOException {
+
+    /**
+     * Version of the serialized form.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructs an instance with the specific detail message.
+     *
+     * @param message the detail message
+     */
+    public ChecksumMismatchException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,645 @@
+/*
+ * Copyright (C) 2019 sea
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package top.srsea.lever.network;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import io.reactivex.Observable;
+import io.reactivex.ObservableSource;
+import io.reactivex.annotations.NonNull;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.functions.Consumer;
+import io.reactivex.functions.Function;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.subjects.BehaviorSubject;
+import io.reactivex.subjects.Subject;
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSink;
+import okio.BufferedSource;
+import okio.Okio;
+import top.srsea.torque.common.IOHelper;
+import top.srsea.torque.common.Preconditions;
+import top.srsea.torque.common.StringHelper;
+
+/**
+ * A batch download of many files, such as thumbnails or tiles, to the same directory.
+ *
+ * <p>Unlike a {@link DownloadTask} per file, all files share one client and one service, requests are
+ * multiplexed over HTTP/2 connections when the server supports it, and a single aggregate progress
+ * is published. A failed file does not stop the others.
+ *
+ * @author sea
+ */
+public class DownloadBatch {
+
+    /**
+     * Bytes read by a request between two writes.
+     */
+    private static final long READ_BYTES = 8192;
+
+    /**
+     * Items to download.
+     */
+    private final List<Item> items;
+
+    /**
+     * Directory to save files.
+     */
+    private final File savePath;
+
+    /**
+     * OkHttpClient shared by all requests.
+     */
+    private final OkHttpClient client;
+
+    /**
+     * Max count of concurrent requests.
+     */
+    private final int maxConcurrency;
+
+    /**
+     * Sampling policy of the progress.
+     */
+    private final ProgressSampling sampling;
+
+    /**
+     * Aggregate progress subject.
+     */
+    private final Subject<BatchProgress> progress;
+
+    /**
+     * Filenames taken by files of the current run.
+     */
+    private final Set<String> filenames = new HashSet<>();
+
+    /**
+     * Filenames obtained from responses, by the URL of the request.
+     */
+    private final Map<HttpUrl, String> remoteFilenames = new ConcurrentHashMap<>();
+
+    /**
+     * Latest aggregate progress not emitted yet.
+     */
+    private BatchProgress pending;
+
+    /**
+     * Whether a thread is emitting, the other threads leave their progress to it.
+     */
+    private boolean emitting;
+
+    /**
+     * Bytes read of all files.
+     */
+    private long current;
+
+    /**
+     * Bytes total of all started files.
+     */
+    private long total;
+
+    /**
+     * Count of files downloaded.
+     */
+    private int completed;
+
+    /**
+     * Count of files failed.
+     */
+    private int failed;
+
+    /**
+     * Bytes read of the last emission.
+     */
+    private long lastCurrent;
+
+    /**
+     * Time of the last emission.
+     */
+    private long lastNanos;
+
+    /**
+     * Constructs an instance with builder.
+     *
+     * @param builder the specific builder
+     */
+    private DownloadBatch(Builder builder) {
+        items = Collections.unmodifiableList(new ArrayList<>(builder.items));
+        savePath = builder.savePath;
+        client = (builder.client != null ? builder.client : RetrofitProvider.client()).newBuilder()
+                .addInterceptor(new Interceptor() {
+                    @Nonnull
+                    @Override
+                    public Response intercept(@Nonnull Chain chain) throws IOException {
+                        Response response = chain.proceed(chain.request());
+                        remoteFilenames.put(chain.request().url(), DownloadTask.obtainFilename(response));
+                        return response;
+                    }
+                }).build();
+        maxConcurrency = Math.max(builder.maxConcurrency, 1);
+        sampling = builder.sampling;
+        progress = BehaviorSubject.<BatchProgress>create().toSerialized();
+    }
+
+    /**
+     * Returns the count of files in this batch.
+     *
+     * @return count of files
+     */
+    public int count() {
+        return items.size();
+    }
+
+    /**
+     * Observable aggregate progress of this batch.
+     *
+     * <p>The total grows as files start, since the length of a pending file is unknown.
+     *
+     * @return observable aggregate progress
+     */
+    public Observable<BatchProgress> progress() {
+        return progress;
+    }
+
+    /**
+     * Starts the batch, emits a result per file in order of completion, then completes.
+     *
+     * <p>Failures of files are emitted as results instead of terminating the batch.
+     * Files of the same name are saved as {@code name (1).ext}, {@code name (2).ext} and so on.
+     * A file is written into a partial file with {@code .part} suffix, which is renamed on completion
+     * or deleted on failure.
+     *
+     * @return observable results
+     */
+    public Observable<Result> start() {
+        final DownloadService service = RetrofitProvider.create(client, DownloadService.class);
+        return Observable.fromIterable(items)
+                .flatMap(new Function<Item, ObservableSource<Result>>() {
+                    @Override
+                    public ObservableSource<Result> apply(@NonNull Item item) {
+                        return fetch(service, item).subscribeOn(Schedulers.io());
+                    }
+                }, maxConcurrency)
+                .doOnSubscribe(new Consumer<Disposable>() {
+                    @Override
+                    public void accept(Disposable disposable) throws IOException {
+                        Preconditions.require(savePath.exists() || savePath.mkdirs(),
+                                new StorageException("cannot mkdirs."));
+                        reset();
+                    }
+                });
+    }
+
+    /**
+     * Fetches a file, and turns a failure into a result.
+     *
+     * @param service download service
+     * @param item    item to fetch
+     * @return observable result of the item
+     */
+    private Observable<Result> fetch(DownloadService service, final Item item) {
+        return service.download(item.url)
+                .map(new Function<ResponseBody, Result>() {
+                    @Override
+                    public Result apply(@NonNull ResponseBody body) throws Exception {
+                        File file = write(item, body);
+                        finish(true);
+                        return new Result(item.url, file, null);
+                    }
+                })
+                .onErrorResumeNext(new Function<Throwable, ObservableSource<Result>>() {
+                    @Override
+                    public ObservableSource<Result> apply(@NonNull final Throwable throwable) {
+                        return Observable.fromCallable(new Callable<Result>() {
+                            @Override
+                            public Result call() {
+                                finish(false);
+                                return new Result(item.url, null, throwable);
+                            }
+                        });
+                    }
+                });
+    }
+
+    /**
+     * Writes the response body of an item to its file.
+     *
+     * @param item the item
+     * @param body response body of the item
+     * @return the written file
+     * @throws IOException if an I/O error occurs
+     */
+    private File write(Item item, ResponseBody body) throws IOException {
+        String filename = item.filename;
+        if (StringHelper.isBlank(filename)) {
+            HttpUrl url = HttpUrl.parse(item.url);
+            filename = url != null ? remoteFilenames.get(url) : null;
+        }
+        if (StringHelper.isBlank(filename)) {
+            Log.w("DownloadBatch", "Cannot obtain a filename, use UUID instead.");
+            filename = UUID.randomUUID().toString();
+        }
+        File target = new File(savePath, claim(filename));
+        File part = FileAllocator.partOf(target);
+        start(Math.max(body.contentLength(), 0));
+        boolean written = false;
+        try {
+            BufferedSource source = body.source();
+            BufferedSink sink = Okio.buffer(Okio.sink(part));
+            try {
+                long read;
+                while ((read = source.read(sink.getBuffer(), READ_BYTES)) != -1) {
+                    sink.emitCompleteSegments();
+                    advance(read);
+                }
+                sink.flush();
+            } finally {
+                IOHelper.close(sink);
+            }
+            FileAllocator.commit(part, target);
+            written = true;
+        } finally {
+            IOHelper.close(body);
+            if (!written) {
+                //noinspection ResultOfMethodCallIgnored
+                part.delete();
+            }
+        }
+        return target;
+    }
+
+    /**
+     * Takes a filename not taken by other files of the current run.
+     *
+     * @param filename the filename wanted
+     * @return the filename, or it with a number appended before the extension if taken
+     */
+    private synchronized String claim(String filename) {
+        int dot = filename.lastIndexOf('.');
+        String name = dot > 0 ? filename.substring(0, dot) : filename;
+        String extension = dot > 0 ? filename.substring(dot) : "";
+        String claimed = filename;
+        for (int i = 1; !filenames.add(claimed); ++i) {
+            claimed = name + " (" + i + ")" + extension;
+        }
+        return claimed;
+    }
+
+    /**
+     * Clears the aggregate progress before the batch starts.
+     */
+    private synchronized void reset() {
+        filenames.clear();
+        remoteFilenames.clear();
+        pending = null;
+        current = 0;
+        total = 0;
+        completed = 0;
+        failed = 0;
+        lastCurrent = 0;
+        lastNanos = System.nanoTime();
+    }
+
+    /**
+     * Accumulates the length of a started file.
+     *
+     * @param length length of the file, 0 if unknown
+     */
+    private synchronized void start(long length) {
+        total += length;
+    }
+
+    /**
+     * Accumulates bytes read, emits if accepted by the sampling policy.
+     *
+     * @param bytes bytes read
+     */
+    private void advance(long bytes) {
+        boolean drain = false;
+        synchronized (this) {
+            current += bytes;
+            long now = System.nanoTime();
+            if (sampling.accept(lastCurrent, lastNanos, current, total, now)) {
+                drain = sample(now);
+            }
+        }
+        if (drain) {
+            drain();
+        }
+    }
+
+    /**
+     * Counts a finished file, and emits regardless of the sampling policy.
+     *
+     * @param succeeded whether the file is downloaded
+     */
+    private void finish(boolean succeeded) {
+        boolean drain;
+        synchronized (this) {
+            if (succeeded) {
+                ++completed;
+            } else {
+                ++failed;
+            }
+            drain = sample(System.nanoTime());
+        }
+        if (drain) {
+            drain();
+        }
+    }
+
+    /**
+     * Takes a snapshot of the aggregate progress as pending, must be called with the lock held.
+     *
+     * @param now current time in nanoseconds
+     * @return {@code true} if the caller should drain the pending progress, otherwise another thread is emitting
+     */
+    private boolean sample(long now) {
+        lastCurrent = current;
+        lastNanos = now;
+        pending = new BatchProgress(current, total, items.size(), completed, failed);
+        if (emitting) {
+            return false;
+        }
+        emitting = true;
+        return true;
+    }
+
+    /**
+     * Publishes the pending progress outside the lock, until no newer progress is left by other threads,
+     * so a slow subscriber never blocks the downloads.
+     */
+    private void drain() {
+        while (true) {
+            BatchProgress next;
+            synchronized (this) {
+                next = pending;
+                if (next == null) {
+                    emitting = false;
+                    return;
+                }
+                pending = null;
+            }
+            boolean emitted = false;
+            try {
+                progress.onNext(next);
+                emitted = true;
+            } finally {
+                if (!emitted) {
+                    // lets the next emission through after the subscriber throws.
+                    synchronized (this) {
+                        emitting = false;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * A file to download.
+     */
+    private static class Item {
+        final String url;
+        final String filename;
+
+        Item(String url, @Nullable String filename) {
+            this.url = url;
+            this.filename = filename;
+        }
+    }
+
+    /**
+     * Result of a file in the batch.
+     *
+     * @author sea
+     */
+    public static class Result {
+
+        /**
+         * Remote file URL.
+         */
+        private final String url;
+
+        /**
+         * Downloaded file, null if failed.
+         */
+        private final File file;
+
+        /**
+         * Failure, null if succeeded.
+         */
+        private final Throwable error;
+
+        /**
+         * Constructs an instance.
+         *
+         * @param url   remote file URL
+         * @param file  downloaded file, null if failed
+         * @param error failure, null if succeeded
+         */
+        Result(String url, @Nullable File file, @Nullable Throwable error) {
+            this.url = url;
+            this.file = file;
+            this.error = error;
+        }
+
+        /**
+         * Gets the remote file URL.
+         *
+         * @return remote file URL
+         */
+        public String url() {
+            return url;
+        }
+
+        /**
+         * Gets the downloaded file.
+         *
+         * @return downloaded file, null if failed
+         */
+        @Nullable
+        public File file() {
+            return file;
+        }
+
+        /**
+         * Gets the failure.
+         *
+         * @return failure, null if succeeded
+         */
+        @Nullable
+        public Throwable error() {
+            return error;
+        }
+
+        /**
+         * Returns a value whether the file is downloaded.
+         *
+         * @return {@code true} if succeeded
+         */
+        public boolean isSuccessful() {
+            return error == null;
+        }
+    }
+
+    /**
+     * Builder of {@link DownloadBatch}.
+     *
+     * @author sea
+     */
+    public static class Builder {
+
+        /**
+         * Items to download.
+         */
+        List<Item> items = new ArrayList<>();
+
+        /**
+         * Directory to save files.
+         */
+        File savePath;
+
+        /**
+         * OkHttpClient shared by all requests.
+         */
+        OkHttpClient client;
+
+        /**
+         * Max count of concurrent requests.
+         */
+        int maxConcurrency = 8;
+
+        /**
+         * Sampling policy of the progress.
+         */
+        ProgressSampling sampling = ProgressSampling.none();
+
+        /**
+         * Adds a file, whose filename is obtained from the response.
+         *
+         * @param url remote file URL
+         * @return current builder
+         */
+        public Builder add(@Nonnull String url) {
+            return add(url, null);
+        }
+
+        /**
+         * Adds a file with the specific filename.
+         *
+         * @param url      remote file URL
+         * @param filename filename to save, obtained from the response if empty
+         * @return current builder
+         */
+        public Builder add(@Nonnull String url, @Nullable String filename) {
+            items.add(new Item(url, filename));
+            return this;
+        }
+
+        /**
+         * Adds files, whose filenames are obtained from the responses.
+         *
+         * @param urls remote file URLs
+         * @return current builder
+         */
+        public Builder addAll(@Nonnull Iterable<String> urls) {
+            for (String url : urls) {
+                add(url);
+            }
+            return this;
+        }
+
+        /**
+         * Sets the directory to save files, default is {@code ${HOME}/Downloads}.
+         *
+         * @param savePath the specific directory
+         * @return current builder
+         */
+        public Builder savePath(@Nullable File savePath) {
+            this.savePath = savePath;
+            return this;
+        }
+
+        /**
+         * Sets the client shared by all requests, default is the shared client of {@link RetrofitProvider}.
+         *
+         * @param client the specific client
+         * @return current builder
+         */
+        public Builder client(@Nullable OkHttpClient client) {
+            this.client = client;
+            return this;
+        }
+
+        /**
+         * Sets the max count of concurrent requests, default is 8.
+         *
+         * @param maxConcurrency the specific max count
+         * @return current builder
+         * @throws IllegalArgumentException if not positive
+         */
+        public Builder maxConcurrency(int maxConcurrency) {
+            Preconditions.require(maxConcurrency > 0,
+                    new IllegalArgumentException("maxConcurrency must be positive."));
+            this.maxConcurrency = maxConcurrency;
+            return this;
+        }
+
+        /**
+         * Sets the sampling policy of the progress, default is to emit every read.
+         *
+         * <p>Progress is always emitted when a file finishes.
+         *
+         * @param sampling the specific sampling policy
+         * @return current builder
+         */
+        public Builder sampling(@Nonnull ProgressSampling sampling) {
+            this.sampling = sampling;
+            return this;
+        }
+
+        /**
+         * Builds a {@link DownloadBatch} with this builder.
+         *
+         * @return the batch
+         */
+        public DownloadBatch build() {
+            if (savePath == null) {
+                savePath = new File(System.getenv("HOME"), "Downloads");
+            }
+            return new DownloadBatch(this);
+        }
+    }
+}
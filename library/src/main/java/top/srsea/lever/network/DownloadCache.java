@@ -0,0 +1,472 @@
+/*
+ * Copyright (C) 2019 sea
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package top.srsea.lever.network;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import okhttp3.Headers;
+import top.srsea.lever.storage.StorageHelper;
+import top.srsea.torque.common.IOHelper;
+import top.srsea.torque.common.Preconditions;
+
+/**
+ * An on-disk cache of downloaded files, revalidated with the ETag or Last-Modified of the remote file.
+ *
+ * <p>Contents are stored by their SHA-256, so the same content under different urls is stored once.
+ * Entries are evicted in least recently used order once the size of contents exceeds the max size.
+ *
+ * @author sea
+ * @see DownloadTask.Builder#cache(DownloadCache)
+ */
+public class DownloadCache {
+
+    /**
+     * Suffix of entry files.
+     */
+    private static final String ENTRY_SUFFIX = ".entry";
+
+    /**
+     * Directory of the cache.
+     */
+    private final File directory;
+
+    /**
+     * Directory of contents, named by SHA-256.
+     */
+    private final File contents;
+
+    /**
+     * Max size of contents in bytes.
+     */
+    private final long maxSize;
+
+    /**
+     * Constructs an instance with the specific directory and max size.
+     *
+     * @param directory directory of the cache
+     * @param maxSize   max size of contents in bytes
+     */
+    public DownloadCache(@Nonnull File directory, long maxSize) {
+        this.directory = directory;
+        this.contents = new File(directory, "contents");
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Creates an instance in the cache directory of the application.
+     *
+     * @param maxSize max size of contents in bytes
+     * @return new instance
+     * @see StorageHelper#getCacheDir()
+     */
+    public static DownloadCache create(long maxSize) {
+        return new DownloadCache(new File(StorageHelper.getCacheDir(), "downloads"), maxSize);
+    }
+
+    /**
+     * Returns the size of all contents in bytes.
+     *
+     * @return size of contents
+     */
+    public synchronized long size() {
+        long size = 0;
+        for (File file : listFiles(contents)) {
+            size += file.length();
+        }
+        return size;
+    }
+
+    /**
+     * Removes the entry of the specific url.
+     *
+     * @param url url of the entry
+     */
+    public synchronized void remove(@Nonnull String url) {
+        Entry entry = get(url);
+        if (entry != null) {
+            remove(entry);
+        }
+    }
+
+    /**
+     * Removes all entries and contents.
+     */
+    public synchronized void evictAll() {
+        for (File file : listFiles(directory)) {
+            if (file.isFile()) {
+                //noinspection ResultOfMethodCallIgnored
+                file.delete();
+            }
+        }
+        for (File file : listFiles(contents)) {
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+        }
+    }
+
+    /**
+     * Gets the entry of the specific url.
+     *
+     * @param url url of the entry
+     * @return entry, or null if absent or its content is missing
+     */
+    @Nullable
+    synchronized Entry get(String url) {
+        File file = new File(directory, sha256(url) + ENTRY_SUFFIX);
+        Entry entry = Entry.load(file);
+        if (entry == null || !entry.url.equals(url)) {
+            return null;
+        }
+        File content = content(entry);
+        if (!content.isFile() || content.length() != entry.length) {
+            remove(entry);
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * Copies the content of the entry to the target file, and marks the entry as recently used.
+     *
+     * @param entry  the entry
+     * @param target the target file
+     * @throws IOException if failed to copy
+     */
+    synchronized void copyTo(Entry entry, File target) throws IOException {
+        copy(content(entry), target, null);
+        //noinspection ResultOfMethodCallIgnored
+        entry.file.setLastModified(System.currentTimeMillis());
+    }
+
+    /**
+     * Puts the downloaded file of the specific url, does nothing if the response has no validator.
+     *
+     * <p>The content is stored by its SHA-256, and shared with other entries of the same content.
+     * The entry is replaced before the previous content is released, so that the same content
+     * stored again is never deleted.
+     *
+     * @param url     url of the file
+     * @param headers headers of the response
+     * @param file    the downloaded file
+     * @throws IOException if failed to store
+     */
+    synchronized void put(String url, @Nullable Headers headers, File file) throws IOException {
+        String etag = headers == null ? null : headers.get("ETag");
+        String lastModified = headers == null ? null : headers.get("Last-Modified");
+        if (etag == null && lastModified == null) {
+            return;
+        }
+        Preconditions.require(contents.exists() || contents.mkdirs(), new StorageException("cannot mkdirs."));
+        Entry old = get(url);
+        File temp = new File(contents, sha256(url) + ".tmp");
+        MessageDigest digest = newDigest();
+        copy(file, temp, digest);
+        String hash = hex(digest.digest());
+        File content = new File(contents, hash);
+        if (content.exists()) {
+            //noinspection ResultOfMethodCallIgnored
+            temp.delete();
+        } else if (!temp.renameTo(content)) {
+            throw new IOException("cannot store " + content);
+        }
+        new Entry(new File(directory, sha256(url) + ENTRY_SUFFIX), url, etag, lastModified,
+                hash, file.length()).commit();
+        if (old != null && !old.hash.equals(hash)) {
+            release(old.hash);
+        }
+        trim();
+    }
+
+    /**
+     * Evicts least recently used entries until the size of contents does not exceed the max size.
+     *
+     * <p>Entries are loaded once to count the references of each content, instead of rescanning
+     * all entries on each eviction.
+     */
+    private void trim() {
+        long size = size();
+        if (size <= maxSize) {
+            return;
+        }
+        File[] files = listFiles(directory);
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File o1, File o2) {
+                long l1 = o1.lastModified();
+                long l2 = o2.lastModified();
+                return l1 < l2 ? -1 : (l1 == l2 ? 0 : 1);
+            }
+        });
+        List<Entry> entries = new ArrayList<>(files.length);
+        Map<String, Integer> references = new HashMap<>();
+        for (File file : files) {
+            Entry entry = Entry.load(file);
+            if (entry != null) {
+                entries.add(entry);
+                Integer count = references.get(entry.hash);
+                references.put(entry.hash, count == null ? 1 : count + 1);
+            }
+        }
+        for (Entry entry : entries) {
+            if (size <= maxSize) {
+                break;
+            }
+            //noinspection ResultOfMethodCallIgnored
+            entry.file.delete();
+            int count = references.get(entry.hash) - 1;
+            references.put(entry.hash, count);
+            if (count == 0) {
+                size -= delete(entry.hash);
+            }
+        }
+    }
+
+    /**
+     * Removes the entry, and its content if not shared by other entries.
+     *
+     * @param entry the entry to remove
+     * @return bytes of the removed content, 0 if the content is shared
+     */
+    private long remove(Entry entry) {
+        //noinspection ResultOfMethodCallIgnored
+        entry.file.delete();
+        return release(entry.hash);
+    }
+
+    /**
+     * Deletes the content of the specific hash if no entry refers to it.
+     *
+     * @param hash SHA-256 of the content
+     * @return bytes of the deleted content, 0 if the content is referred
+     */
+    private long release(String hash) {
+        for (File file : listFiles(directory)) {
+            Entry other = Entry.load(file);
+            if (other != null && other.hash.equals(hash)) {
+                return 0;
+            }
+        }
+        return delete(hash);
+    }
+
+    /**
+     * Deletes the content of the specific hash.
+     *
+     * @param hash SHA-256 of the content
+     * @return bytes of the deleted content
+     */
+    private long delete(String hash) {
+        File content = new File(contents, hash);
+        long length = content.length();
+        //noinspection ResultOfMethodCallIgnored
+        content.delete();
+        return length;
+    }
+
+    /**
+     * Returns the content file of the entry.
+     *
+     * @param entry the entry
+     * @return content file
+     */
+    private File content(Entry entry) {
+        return new File(contents, entry.hash);
+    }
+
+    /**
+     * Lists files of the directory.
+     *
+     * @param directory the directory
+     * @return files, empty if the directory not exists
+     */
+    private static File[] listFiles(File directory) {
+        File[] files = directory.listFiles();
+        return files == null ? new File[0] : files;
+    }
+
+    /**
+     * Copies the source file to the target file, and updates the digest if not null.
+     *
+     * <p>Copies with {@link FileChannel#transferTo} if no digest is required.
+     *
+     * @param source the source file
+     * @param target the target file
+     * @param digest the digest to update, nullable
+     * @throws IOException if failed to copy
+     */
+    private static void copy(File source, File target, @Nullable MessageDigest digest) throws IOException {
+        FileInputStream in = new FileInputStream(source);
+        FileOutputStream out = new FileOutputStream(target);
+        try {
+            FileChannel inChannel = in.getChannel();
+            FileChannel outChannel = out.getChannel();
+            long size = inChannel.size();
+            if (digest == null) {
+                long position = 0;
+                while (position < size) {
+                    position += inChannel.transferTo(position, size - position, outChannel);
+                }
+                return;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+            while (inChannel.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer.array(), 0, buffer.limit());
+                outChannel.write(buffer);
+                buffer.clear();
+            }
+        } finally {
+            IOHelper.close(in, out);
+        }
+    }
+
+    /**
+     * Returns the SHA-256 of the string in hex.
+     *
+     * @param value the string
+     * @return SHA-256 in hex
+     */
+    private static String sha256(String value) {
+        return hex(newDigest().digest(value.getBytes(Charset.forName("UTF-8"))));
+    }
+
+    /**
+     * Creates a new SHA-256 digest.
+     *
+     * @return new digest
+     */
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Encodes the bytes in lower case hex.
+     *
+     * @param bytes the bytes
+     * @return hex string
+     */
+    static String hex(byte[] bytes) {
+        char[] digits = "0123456789abcdef".toCharArray();
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; ++i) {
+            chars[i * 2] = digits[(bytes[i] >> 4) & 0xf];
+            chars[i * 2 + 1] = digits[bytes[i] & 0xf];
+        }
+        return new String(chars);
+    }
+
+    /**
+     * A cached entry of an url, stored as properties.
+     */
+    static class Entry {
+        final File file;
+        final String url;
+        @Nullable
+        final String etag;
+        @Nullable
+        final String lastModified;
+        final String hash;
+        final long length;
+
+        Entry(File file, String url, @Nullable String etag, @Nullable String lastModified,
+              String hash, long length) {
+            this.file = file;
+            this.url = url;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.hash = hash;
+            this.length = length;
+        }
+
+        @Nullable
+        static Entry load(File file) {
+            if (!file.isFile() || !file.getName().endsWith(ENTRY_SUFFIX)) {
+                return null;
+            }
+            Properties properties = new Properties();
+            InputStream in;
+            try {
+                in = new FileInputStream(file);
+            } catch (IOException e) {
+                return null;
+            }
+            try {
+                properties.load(in);
+                String url = properties.getProperty("url");
+                String hash = properties.getProperty("hash");
+                if (url == null || hash == null) {
+                    return null;
+                }
+                return new Entry(file, url, properties.getProperty("etag"),
+                        properties.getProperty("lastModified"), hash,
+                        Long.parseLong(properties.getProperty("length")));
+            } catch (IOException | RuntimeException e) {
+                return null;
+            } finally {
+                IOHelper.close(in);
+            }
+        }
+
+        void commit() throws IOException {
+            Properties properties = new Properties();
+            properties.setProperty("url", url);
+            if (etag != null) {
+                properties.setProperty("etag", etag);
+            }
+            if (lastModified != null) {
+                properties.setProperty("lastModified", lastModified);
+            }
+            properties.setProperty("hash", hash);
+            properties.setProperty("length", String.valueOf(length));
+            File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+            OutputStream out = new FileOutputStream(temp);
+            try {
+                properties.store(out, null);
+            } finally {
+                IOHelper.close(out);
+            }
+            // replaced atomically, a crash never leaves a partial entry.
+            if (!temp.renameTo(file)) {
+                throw new IOException("cannot commit entry " + file);
+            }
+        }
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) 2019 sea
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package top.srsea.lever.network;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import top.srsea.torque.common.IOHelper;
+
+/**
+ * A sidecar journal of a download, records the validator of the remote file
+ * and the committed bytes of each segment, to resume an interrupted download.
+ *
+ * <p>The journal is stored as properties next to the target file, and replaced atomically on commit.
+ *
+ * @author sea
+ */
+class DownloadJournal {
+
+    /**
+     * Suffix of the journal filename.
+     */
+    static final String SUFFIX = ".journal";
+
+    /**
+     * Journal file.
+     */
+    private final File file;
+
+    /**
+     * ETag or Last-Modified of the remote file, used as {@code If-Range} to resume.
+     */
+    final String validator;
+
+    /**
+     * Length of the remote file.
+     */
+    final long length;
+
+    /**
+     * Segments of the remote file, positions are the committed offsets,
+     * segments split during the download are appended.
+     */
+    final List<Segment> segments;
+
+    /**
+     * Whether the journal file has been deleted, a deleted journal is never committed again.
+     */
+    private boolean deleted;
+
+    /**
+     * Constructs an instance.
+     *
+     * @param file      journal file
+     * @param validator validator of the remote file
+     * @param length    length of the remote file
+     * @param segments  segments of the remote file
+     */
+    DownloadJournal(File file, String validator, long length, List<Segment> segments) {
+        this.file = file;
+        this.validator = validator;
+        this.length = length;
+        this.segments = new CopyOnWriteArrayList<>(segments);
+    }
+
+    /**
+     * Returns the journal file of the specific target.
+     *
+     * @param target target file of the download
+     * @return journal file
+     */
+    static File fileOf(File target) {
+        return new File(target.getParentFile(), target.getName() + SUFFIX);
+    }
+
+    /**
+     * Loads a journal from the specific file.
+     *
+     * @param file journal file
+     * @return journal, or null if not exists or corrupted
+     */
+    static DownloadJournal load(File file) {
+        if (!file.isFile()) {
+            return null;
+        }
+        Properties properties = new Properties();
+        InputStream in;
+        try {
+            in = new FileInputStream(file);
+        } catch (IOException e) {
+            return null;
+        }
+        try {
+            properties.load(in);
+            String validator = properties.getProperty("validator");
+            long length = Long.parseLong(properties.getProperty("length"));
+            List<Segment> segments = new ArrayList<>();
+            for (String value : properties.getProperty("segments").split(",")) {
+                String[] fields = value.split(":");
+                segments.add(new Segment(Long.parseLong(fields[0]), Long.parseLong(fields[1]),
+                        Long.parseLong(fields[2])));
+            }
+            if (validator == null || segments.isEmpty()) {
+                return null;
+            }
+            return new DownloadJournal(file, validator, length, segments);
+        } catch (IOException | RuntimeException e) {
+            return null;
+        } finally {
+            IOHelper.close(in);
+        }
+    }
+
+    /**
+     * Returns the count of committed bytes of all segments.
+     *
+     * @return committed bytes
+     */
+    long committed() {
+        long committed = 0;
+        for (Segment segment : segments) {
+            committed += segment.position - segment.start;
+        }
+        return committed;
+    }
+
+    /**
+     * Returns a value whether all segments have been written.
+     *
+     * @return {@code true} if completed
+     */
+    boolean isCompleted() {
+        for (Segment segment : segments) {
+            if (!segment.isCompleted()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Commits current positions of all segments to the journal file.
+     *
+     * @throws IOException if failed to write the journal file
+     */
+    synchronized void commit() throws IOException {
+        if (deleted) {
+            return;
+        }
+        StringBuilder builder = new StringBuilder();
+        for (Segment segment : segments) {
+            if (builder.length() > 0) {
+                builder.append(',');
+            }
+            builder.append(segment.start).append(':').append(segment.end).append(':').append(segment.position);
+        }
+        Properties properties = new Properties();
+        properties.setProperty("validator", validator);
+        properties.setProperty("length", String.valueOf(length));
+        properties.setProperty("segments", builder.toString());
+        File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+        OutputStream out = new FileOutputStream(temp);
+        try {
+            properties.store(out, null);
+        } finally {
+            IOHelper.close(out);
+        }
+        if (!temp.renameTo(file)) {
+            throw new IOException("cannot commit journal " + file);
+        }
+    }
+
+    /**
+     * Deletes the journal file, later commits are ignored.
+     */
+    synchronized void delete() {
+        deleted = true;
+        //noinspection ResultOfMethodCallIgnored
+        file.delete();
+    }
+}
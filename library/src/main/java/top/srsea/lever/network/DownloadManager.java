@@ -0,0 +1,504 @@
+/*
+ * Copyright (C) 2019 sea
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package top.srsea.lever.network;
+
+import java.io.File;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.CancellationException;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import io.reactivex.Observable;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.functions.Action;
+import io.reactivex.functions.Consumer;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.subjects.AsyncSubject;
+import io.reactivex.subjects.BehaviorSubject;
+import io.reactivex.subjects.Subject;
+import okhttp3.OkHttpClient;
+import top.srsea.torque.common.Preconditions;
+
+/**
+ * A download queue, runs queued tasks by priority with a global and per-host concurrency limit.
+ *
+ * <p>Tasks of higher priority run first, tasks of the same priority run in order of enqueue.
+ *
+ * @author sea
+ */
+public class DownloadManager {
+
+    /**
+     * Default priority of tasks.
+     */
+    public static final int DEFAULT_PRIORITY = 0;
+
+    /**
+     * Orders entries by priority descending, then by sequence ascending.
+     */
+    private static final Comparator<Entry> ORDER = new Comparator<Entry>() {
+        @Override
+        public int compare(Entry o1, Entry o2) {
+            if (o1.priority != o2.priority) {
+                return o1.priority > o2.priority ? -1 : 1;
+            }
+            return o1.sequence < o2.sequence ? -1 : (o1.sequence == o2.sequence ? 0 : 1);
+        }
+    };
+
+    /**
+     * Max count of running tasks.
+     */
+    private final int maxConcurrency;
+
+    /**
+     * Max count of running tasks of the same host.
+     */
+    private final int maxConcurrencyPerHost;
+
+    /**
+     * OkHttpClient shared by tasks created by this manager.
+     */
+    private final OkHttpClient client;
+
+    /**
+     * Aggregate progress of all tasks since the queue was idle.
+     */
+    private final Subject<Progress> progress;
+
+    /**
+     * Pending entries in order of running.
+     */
+    private final TreeSet<Entry> pending = new TreeSet<>(ORDER);
+
+    /**
+     * Entries pending or running, by task.
+     */
+    private final Map<DownloadTask, Entry> entries = new IdentityHashMap<>();
+
+    /**
+     * Count of running tasks by host.
+     */
+    private final Map<String, Integer> runningPerHost = new HashMap<>();
+
+    /**
+     * Count of running tasks.
+     */
+    private int running;
+
+    /**
+     * Sequence of the next enqueued entry.
+     */
+    private long sequence;
+
+    /**
+     * Bytes read of all tasks since the queue was idle.
+     */
+    private long current;
+
+    /**
+     * Bytes total of all started tasks since the queue was idle.
+     */
+    private long total;
+
+    /**
+     * Constructs an instance with builder.
+     *
+     * @param builder the specific builder
+     */
+    private DownloadManager(Builder builder) {
+        maxConcurrency = builder.maxConcurrency;
+        maxConcurrencyPerHost = builder.maxConcurrencyPerHost;
+        client = builder.client;
+        progress = BehaviorSubject.<Progress>create().toSerialized();
+    }
+
+    /**
+     * Creates a task builder with the client of this manager,
+     * tasks share its connection pool and dispatcher.
+     *
+     * @return new task builder
+     */
+    public DownloadTask.Builder newTask() {
+        return new DownloadTask.Builder().client(client);
+    }
+
+    /**
+     * Creates a batch builder with the client of this manager,
+     * batches share its connection pool and dispatcher.
+     *
+     * @return new batch builder
+     */
+    public DownloadBatch.Builder newBatch() {
+        return new DownloadBatch.Builder().client(client);
+    }
+
+    /**
+     * Enqueues a task with the default priority.
+     *
+     * @param task the task to enqueue
+     * @return observable file of the task, emits when the task finishes
+     * @see #enqueue(DownloadTask, int)
+     */
+    public Observable<File> enqueue(@Nonnull DownloadTask task) {
+        return enqueue(task, DEFAULT_PRIORITY);
+    }
+
+    /**
+     * Enqueues a task with the specific priority, the task starts once a slot is available.
+     *
+     * <p>The task runs whether the returned observable is subscribed or not,
+     * use {@link #cancel(DownloadTask)} to stop it.
+     *
+     * @param task     the task to enqueue
+     * @param priority priority of the task, higher runs first
+     * @return observable file of the task, emits when the task finishes
+     * @throws IllegalStateException if the task has been enqueued and not finished
+     */
+    public Observable<File> enqueue(@Nonnull DownloadTask task, int priority) {
+        Entry entry;
+        synchronized (this) {
+            if (entries.containsKey(task)) {
+                throw new IllegalStateException("task already enqueued.");
+            }
+            entry = new Entry(task, host(task.url()), priority, sequence++);
+            entries.put(task, entry);
+            pending.add(entry);
+        }
+        schedule();
+        return entry.result;
+    }
+
+    /**
+     * Changes the priority of a pending task, has no effect if the task is running or finished.
+     *
+     * @param task     the pending task
+     * @param priority new priority of the task
+     * @return {@code true} if the task is pending and reordered
+     */
+    public boolean setPriority(@Nonnull DownloadTask task, int priority) {
+        synchronized (this) {
+            Entry entry = entries.get(task);
+            if (entry == null || !pending.remove(entry)) {
+                return false;
+            }
+            entry.priority = priority;
+            pending.add(entry);
+        }
+        schedule();
+        return true;
+    }
+
+    /**
+     * Cancels a pending or running task, its observable file terminates with {@link CancellationException}.
+     *
+     * @param task the task to cancel
+     * @return {@code true} if the task is pending or running
+     */
+    public boolean cancel(@Nonnull DownloadTask task) {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(task);
+            if (entry == null) {
+                return false;
+            }
+            entry.cancelled = true;
+            if (pending.remove(entry)) {
+                entries.remove(task);
+                entry.result.onError(new CancellationException());
+                return true;
+            }
+        }
+        Disposable disposable = entry.disposable;
+        if (disposable != null) {
+            disposable.dispose();
+        }
+        finish(entry, new CancellationException());
+        return true;
+    }
+
+    /**
+     * Observable aggregate progress of all tasks enqueued since the queue was idle.
+     *
+     * <p>The total grows as tasks start, since the length of a pending task is unknown.
+     *
+     * @return observable aggregate progress
+     */
+    public Observable<Progress> progress() {
+        return progress;
+    }
+
+    /**
+     * Returns the count of pending tasks.
+     *
+     * @return count of pending tasks
+     */
+    public synchronized int pendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Returns the count of running tasks.
+     *
+     * @return count of running tasks
+     */
+    public synchronized int runningCount() {
+        return running;
+    }
+
+    /**
+     * Starts pending tasks as long as the concurrency limits allow.
+     */
+    private void schedule() {
+        List<Entry> ready = new ArrayList<>();
+        synchronized (this) {
+            for (Iterator<Entry> it = pending.iterator(); it.hasNext() && running < maxConcurrency; ) {
+                Entry entry = it.next();
+                Integer count = runningPerHost.get(entry.host);
+                if (count != null && count >= maxConcurrencyPerHost) {
+                    continue;
+                }
+                it.remove();
+                runningPerHost.put(entry.host, count == null ? 1 : count + 1);
+                ++running;
+                entry.started = true;
+                ready.add(entry);
+            }
+        }
+        for (Entry entry : ready) {
+            start(entry);
+        }
+    }
+
+    /**
+     * Starts the task of the entry on the io scheduler.
+     *
+     * @param entry the entry to start
+     */
+    private void start(final Entry entry) {
+        entry.progressDisposable = entry.task.progress().subscribe(new Consumer<Progress>() {
+            @Override
+            public void accept(Progress progress) {
+                update(entry, progress);
+            }
+        });
+        entry.disposable = entry.task.start()
+                .subscribeOn(Schedulers.io())
+                .subscribe(new Consumer<File>() {
+                    @Override
+                    public void accept(File file) {
+                        entry.result.onNext(file);
+                    }
+                }, new Consumer<Throwable>() {
+                    @Override
+                    public void accept(Throwable throwable) {
+                        finish(entry, throwable);
+                    }
+                }, new Action() {
+                    @Override
+                    public void run() {
+                        finish(entry, null);
+                    }
+                });
+        if (entry.cancelled) {
+            entry.disposable.dispose();
+            entry.progressDisposable.dispose();
+        }
+    }
+
+    /**
+     * Accumulates the progress of a task into the aggregate progress, and publishes it.
+     *
+     * @param entry    the entry of the task
+     * @param progress progress of the task
+     */
+    private void update(Entry entry, Progress progress) {
+        Progress aggregate;
+        synchronized (this) {
+            long taskTotal = Math.max(progress.total(), 0);
+            current += progress.current() - entry.current;
+            total += taskTotal - entry.total;
+            entry.current = progress.current();
+            entry.total = taskTotal;
+            aggregate = new Progress(current, total);
+        }
+        this.progress.onNext(aggregate);
+    }
+
+    /**
+     * Releases the slot of a finished entry, terminates its result and schedules next tasks.
+     *
+     * @param entry the finished entry
+     * @param error error of the task, null if succeeded
+     */
+    private void finish(Entry entry, @Nullable Throwable error) {
+        synchronized (this) {
+            if (entry.finished) {
+                return;
+            }
+            entry.finished = true;
+            entries.remove(entry.task);
+            if (entry.started) {
+                --running;
+                Integer count = runningPerHost.get(entry.host);
+                if (count == null || count <= 1) {
+                    runningPerHost.remove(entry.host);
+                } else {
+                    runningPerHost.put(entry.host, count - 1);
+                }
+            }
+            if (entries.isEmpty()) {
+                current = 0;
+                total = 0;
+            }
+        }
+        Disposable progressDisposable = entry.progressDisposable;
+        if (progressDisposable != null) {
+            progressDisposable.dispose();
+        }
+        if (error == null) {
+            entry.result.onComplete();
+        } else {
+            entry.result.onError(error);
+        }
+        schedule();
+    }
+
+    /**
+     * Obtains the host of the url to limit concurrency per host.
+     *
+     * @param url the url
+     * @return host, or empty string if failed
+     */
+    private static String host(String url) {
+        try {
+            String host = URI.create(url).getHost();
+            return host == null ? "" : host;
+        } catch (RuntimeException e) {
+            return "";
+        }
+    }
+
+    /**
+     * An enqueued task with its state.
+     */
+    private static class Entry {
+        final DownloadTask task;
+        final String host;
+        final long sequence;
+        final Subject<File> result = AsyncSubject.create();
+        int priority;
+        boolean started;
+        boolean finished;
+        volatile boolean cancelled;
+        volatile Disposable disposable;
+        volatile Disposable progressDisposable;
+        long current;
+        long total;
+
+        Entry(DownloadTask task, String host, int priority, long sequence) {
+            this.task = task;
+            this.host = host;
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+    }
+
+    /**
+     * Builder of {@link DownloadManager}
+     *
+     * @see DownloadManager
+     */
+    public static class Builder {
+
+        /**
+         * Max count of running tasks.
+         */
+        int maxConcurrency = 3;
+
+        /**
+         * Max count of running tasks of the same host.
+         */
+        int maxConcurrencyPerHost = 2;
+
+        /**
+         * OkHttpClient shared by tasks.
+         */
+        OkHttpClient client;
+
+        /**
+         * Sets the max count of running tasks, default is 3.
+         *
+         * @param maxConcurrency the specific max count
+         * @return current builder
+         * @throws IllegalArgumentException if not positive
+         */
+        public Builder maxConcurrency(int maxConcurrency) {
+            Preconditions.require(maxConcurrency > 0,
+                    new IllegalArgumentException("maxConcurrency must be positive."));
+            this.maxConcurrency = maxConcurrency;
+            return this;
+        }
+
+        /**
+         * Sets the max count of running tasks of the same host, default is 2.
+         *
+         * @param maxConcurrencyPerHost the specific max count
+         * @return current builder
+         * @throws IllegalArgumentException if not positive
+         */
+        public Builder maxConcurrencyPerHost(int maxConcurrencyPerHost) {
+            Preconditions.require(maxConcurrencyPerHost > 0,
+                    new IllegalArgumentException("maxConcurrencyPerHost must be positive."));
+            this.maxConcurrencyPerHost = maxConcurrencyPerHost;
+            return this;
+        }
+
+        /**
+         * Sets the client shared by tasks created by {@link DownloadManager#newTask()},
+         * default is {@link RetrofitProvider#client()}.
+         *
+         * @param client the specific client
+         * @return current builder
+         */
+        public Builder client(@Nullable OkHttpClient client) {
+            this.client = client;
+            return this;
+        }
+
+        /**
+         * Builds a {@code DownloadManager} with this builder.
+         *
+         * @return {@code DownloadManager} instance
+         */
+        public DownloadManager build() {
+            if (client == null) {
+                client = RetrofitProvider.client();
+            }
+            return new DownloadManager(this);
+        }
+    }
+}
@@ -18,7 +18,11 @@ package top.srsea.lever.network;
 
 import io.reactivex.Observable;
 import okhttp3.ResponseBody;
+import retrofit2.Call;
+import retrofit2.Response;
 import retrofit2.http.GET;
+import retrofit2.http.HEAD;
+import retrofit2.http.Header;
 import retrofit2.http.Streaming;
 import retrofit2.http.Url;
 
@@ -39,4 +43,49 @@ public interface DownloadService {
     @GET
     @Streaming
     Observable<ResponseBody> download(@Url String url);
+
+    /**
+     * Downloads the file of the specific url, the call is executed by the caller.
+     *
+     * @param url url of a remote file
+     * @return call of the response
+     */
+    @GET
+    @Streaming
+    Call<ResponseBody> downloadCall(@Url String url);
+
+    /**
+     * Downloads a byte range of the file of the specific url.
+     *
+     * @param url     url of a remote file
+     * @param range   value of the {@code Range} header, such as {@code bytes=0-1023}
+     * @param ifRange value of the {@code If-Range} header, an ETag or a date, omitted if null
+     * @return observable response, whose code should be 206 if the range is satisfied
+     */
+    @GET
+    @Streaming
+    Observable<Response<ResponseBody>> download(@Url String url, @Header("Range") String range,
+                                                @Header("If-Range") String ifRange);
+
+    /**
+     * Probes the file of the specific url without fetching the content.
+     *
+     * @param url url of a remote file
+     * @return observable response with headers only
+     */
+    @HEAD
+    Observable<Response<Void>> probe(@Url String url);
+
+    /**
+     * Downloads the file of the specific url if it has been modified.
+     *
+     * @param url          url of a remote file
+     * @param etag         value of the {@code If-None-Match} header, omitted if null
+     * @param lastModified value of the {@code If-Modified-Since} header, omitted if null
+     * @return observable response, whose code is 304 if not modified
+     */
+    @GET
+    @Streaming
+    Observable<Response<ResponseBody>> revalidate(@Url String url, @Header("If-None-Match") String etag,
+                                                  @Header("If-Modified-Since") String lastModified);
 }
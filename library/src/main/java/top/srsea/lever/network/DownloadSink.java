@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2019 sea
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package top.srsea.lever.network;
+
+import javax.annotation.Nonnull;
+
+import okio.BufferedSource;
+
+/**
+ * A stage consumes the response of a download as it streams, instead of writing it to a file.
+ *
+ * @param <T> type of the result
+ * @author sea
+ * @see DownloadTask#start(DownloadSink)
+ * @see DownloadSinks
+ */
+public interface DownloadSink<T> {
+
+    /**
+     * Consumes the source of the response, called on the thread of the transfer.
+     *
+     * <p>The source is closed after this returns, do not retain it.
+     *
+     * @param source source of the response
+     * @return result of this stage
+     * @throws Exception if failed to consume
+     */
+    @Nonnull
+    T consume(@Nonnull BufferedSource source) throws Exception;
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2019 sea
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package top.srsea.lever.network;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.nio.charset.Charset;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import javax.annotation.Nonnull;
+
+import okio.BufferedSource;
+import okio.GzipSource;
+import okio.Okio;
+import top.srsea.torque.common.IOHelper;
+import top.srsea.torque.common.Preconditions;
+
+/**
+ * Common stages to consume downloads as they stream.
+ *
+ * @author sea
+ * @see DownloadSink
+ */
+public class DownloadSinks {
+
+    private DownloadSinks() {
+    }
+
+    /**
+     * Extracts a ZIP stream into the specific directory.
+     *
+     * @param directory the directory to extract into
+     * @return stage results in the directory
+     */
+    public static DownloadSink<File> unzip(@Nonnull final File directory) {
+        return new DownloadSink<File>() {
+            @Nonnull
+            @Override
+            public File consume(@Nonnull BufferedSource source) throws IOException {
+                Preconditions.require(directory.exists() || directory.mkdirs(), new StorageException("cannot mkdirs."));
+                String root = directory.getCanonicalPath() + File.separator;
+                ZipInputStream in = new ZipInputStream(source.inputStream());
+                ZipEntry entry;
+                while ((entry = in.getNextEntry()) != null) {
+                    File file = new File(directory, entry.getName());
+                    if (!file.getCanonicalPath().startsWith(root)) {
+                        throw new IOException("entry is outside of the directory: " + entry.getName());
+                    }
+                    if (entry.isDirectory()) {
+                        Preconditions.require(file.exists() || file.mkdirs(), new StorageException("cannot mkdirs."));
+                        continue;
+                    }
+                    File parent = file.getParentFile();
+                    Preconditions.require(parent.exists() || parent.mkdirs(), new StorageException("cannot mkdirs."));
+                    OutputStream out = new FileOutputStream(file);
+                    try {
+                        IOHelper.transfer(in, out);
+                    } finally {
+                        IOHelper.close(out);
+                    }
+                }
+                return directory;
+            }
+        };
+    }
+
+    /**
+     * Decompresses a GZIP stream, and passes it to the next stage.
+     *
+     * @param next the next stage
+     * @param <T>  type of the result
+     * @return stage results in the result of the next stage
+     */
+    public static <T> DownloadSink<T> gunzip(@Nonnull final DownloadSink<T> next) {
+        return new DownloadSink<T>() {
+            @Nonnull
+            @Override
+            public T consume(@Nonnull BufferedSource source) throws Exception {
+                return next.consume(Okio.buffer(new GzipSource(source)));
+            }
+        };
+    }
+
+    /**
+     * Reads a JSON stream in UTF-8 as the specific class with Gson.
+     *
+     * @param type class of the result
+     * @param <T>  type of the result
+     * @return stage results in the parsed object
+     */
+    public static <T> DownloadSink<T> json(@Nonnull Class<T> type) {
+        return json((Type) type);
+    }
+
+    /**
+     * Reads a JSON stream in UTF-8 as the specific type with Gson.
+     *
+     * @param type type of the result, such as a {@code TypeToken} type
+     * @param <T>  type of the result
+     * @return stage results in the parsed object
+     */
+    public static <T> DownloadSink<T> json(@Nonnull final Type type) {
+        return new DownloadSink<T>() {
+            @Nonnull
+            @Override
+            public T consume(@Nonnull BufferedSource source) throws IOException {
+                JsonReader reader = new JsonReader(new InputStreamReader(source.inputStream(),
+                        Charset.forName("UTF-8")));
+                T result = new Gson().fromJson(reader, type);
+                if (result == null) {
+                    throw new IOException("empty json.");
+                }
+                return result;
+            }
+        };
+    }
+}
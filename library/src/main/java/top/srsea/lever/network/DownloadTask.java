@@ -18,29 +18,49 @@ package top.srsea.lever.network;
 
 import android.util.Log;
 
+import java.io.EOFException;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
+import java.io.RandomAccessFile;
 import java.io.UnsupportedEncodingException;
 import java.net.URI;
 import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
+import io.reactivex.BackpressureStrategy;
+import io.reactivex.Emitter;
+import io.reactivex.Flowable;
 import io.reactivex.Observable;
+import io.reactivex.ObservableSource;
 import io.reactivex.annotations.NonNull;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.functions.Action;
+import io.reactivex.functions.BooleanSupplier;
+import io.reactivex.functions.Consumer;
 import io.reactivex.functions.Function;
+import io.reactivex.schedulers.Schedulers;
 import io.reactivex.subjects.PublishSubject;
 import io.reactivex.subjects.Subject;
 import okhttp3.Headers;
 import okhttp3.Interceptor;
 import okhttp3.OkHttpClient;
+import okhttp3.Request;
 import okhttp3.Response;
 import okhttp3.ResponseBody;
+import okio.BufferedSource;
+import okio.Okio;
+import org.reactivestreams.Publisher;
+import retrofit2.HttpException;
 import top.srsea.torque.common.IOHelper;
 import top.srsea.torque.common.Preconditions;
 import top.srsea.torque.common.StringHelper;
@@ -52,6 +72,26 @@ import top.srsea.torque.common.StringHelper;
  */
 public class DownloadTask {
 
+    /**
+     * Bytes written by a segment between two journal commits.
+     */
+    private static final long CHECKPOINT_BYTES = 1024 * 1024;
+
+    /**
+     * Size of the buffer of a positional write.
+     */
+    private static final int WRITE_BUFFER_BYTES = 256 * 1024;
+
+    /**
+     * Default minimum size of a segment split for work stealing.
+     */
+    private static final long DEFAULT_MIN_SEGMENT_BYTES = 512 * 1024;
+
+    /**
+     * Content codings accepted if compression enabled.
+     */
+    private static final String ACCEPT_ENCODING = "gzip, deflate";
+
     /**
      * A progress subject to publish and subscribe.
      */
@@ -73,40 +113,152 @@ public class DownloadTask {
     private final String url;
 
     /**
-     * OkHttpClient for download, create a normal instance if null.
+     * OkHttpClient for download, use the shared instance if null.
      */
     private final OkHttpClient client;
 
+    /**
+     * Count of connections to fetch the file, segmented download enabled if greater than 1.
+     */
+    private final int connections;
+
+    /**
+     * Minimum size of a segment split from a slow connection for an idle one.
+     */
+    private final long minSegmentSize;
+
+    /**
+     * Whether to resume an interrupted download from the journal.
+     */
+    private final boolean resumable;
+
+    /**
+     * Policy to sync written bytes to the storage device.
+     */
+    private final SyncPolicy syncPolicy;
+
+    /**
+     * Cache of downloaded files, nullable.
+     */
+    private final DownloadCache cache;
+
+    /**
+     * Expected checksum of the file, nullable.
+     */
+    private final Checksum checksum;
+
+    /**
+     * Rate limiters of the transfer, may be shared with other tasks.
+     */
+    private final RateLimiter[] rateLimiters;
+
+    /**
+     * Whether to negotiate compression and decode it while streaming.
+     */
+    private final boolean compression;
+
+    /**
+     * Retry policy of failed requests.
+     */
+    private final RetryPolicy retryPolicy;
+
+    /**
+     * Whether to allocate the full size before transfer if the length is known.
+     */
+    private final boolean preallocate;
+
+    /**
+     * Whether to write into a partial file renamed on completion.
+     */
+    private final boolean partFile;
+
+    /**
+     * Headers of the last response of the whole file, to store in the cache.
+     */
+    private volatile Headers headers;
+
+    /**
+     * Verifier of the last response of the whole file, fed while streaming.
+     */
+    private volatile Checksum.Verifier verifier;
+
+    /**
+     * Progress emitter, shared by the response bodies of this task.
+     */
+    private final ProgressEmitter progressEmitter;
+
     /**
      * Constructs an instance with builder.
      *
      * @param builder the specific builder.
      */
     private DownloadTask(Builder builder) {
-        progress = PublishSubject.create();
+        progress = PublishSubject.<Progress>create().toSerialized();
         savePath = builder.savePath;
         filename = builder.filename;
         url = builder.url;
         client = builder.client;
+        connections = builder.connections;
+        retryPolicy = builder.retryPolicy;
+        preallocate = builder.preallocate;
+        partFile = builder.partFile;
+        minSegmentSize = builder.minSegmentSize;
+        resumable = builder.resumable;
+        syncPolicy = builder.syncPolicy;
+        cache = builder.cache;
+        checksum = builder.checksum;
+        rateLimiters = builder.rateLimiters;
+        compression = builder.compression;
+        progressEmitter = new ProgressEmitter(progress, builder.sampling);
     }
 
     /**
-     * Creates a new {@code OkHttpClient} instance with progress observer.
+     * Creates a new {@code OkHttpClient} instance with progress observer,
+     * which shares the connection pool and dispatcher with the specific or the shared client.
      *
      * @return new {@code OkHttpClient} instance with progress observer
+     * @see RetrofitProvider#client()
      */
     private OkHttpClient newOkHttpClient() {
-        return (client == null ? new OkHttpClient.Builder() : client.newBuilder())
+        return (client == null ? RetrofitProvider.client() : client).newBuilder()
                 .addInterceptor(new Interceptor() {
                     @Nonnull
                     @Override
                     public Response intercept(@Nonnull Chain chain) throws IOException {
-                        Response response = chain.proceed(chain.request());
+                        Request request = chain.request();
+                        if (request.header("Range") != null || "HEAD".equals(request.method())) {
+                            // lengths, validators and ranges must describe the bytes written to the file,
+                            // not an encoded variant negotiated by default.
+                            request = request.newBuilder().header("Accept-Encoding", "identity").build();
+                        } else if (compression && request.header("Accept-Encoding") == null) {
+                            request = request.newBuilder().header("Accept-Encoding", ACCEPT_ENCODING).build();
+                        }
+                        Response response = chain.proceed(request);
                         if (StringHelper.isBlank(filename)) {
                             filename = obtainFilename(response);
                         }
-                        return response.newBuilder()
-                                .body(new ProgressResponseBody(response.body(), progress))
+                        ResponseBody body = response.body();
+                        if (body == null) {
+                            return response;
+                        }
+                        Response.Builder builder = response.newBuilder();
+                        String contentEncoding = null;
+                        Checksum.Verifier verifier = null;
+                        if (response.request().header("Range") == null) {
+                            if (compression && ProgressResponseBody.isDecodable(response.header("Content-Encoding", ""))) {
+                                contentEncoding = response.header("Content-Encoding");
+                                builder.removeHeader("Content-Encoding").removeHeader("Content-Length");
+                            }
+                            headers = response.headers();
+                            progressEmitter.reset(0, body.contentLength());
+                            if (checksum != null && "GET".equals(response.request().method())) {
+                                verifier = checksum.newVerifier();
+                            }
+                            DownloadTask.this.verifier = verifier;
+                        }
+                        return builder
+                                .body(new ProgressResponseBody(body, progressEmitter, verifier, rateLimiters,
+                                        contentEncoding))
                                 .build();
                     }
                 }).build();
@@ -120,7 +272,7 @@ public class DownloadTask {
      * @param response response to obtain a filename.
      * @return filename
      */
-    private String obtainFilename(Response response) {
+    static String obtainFilename(Response response) {
         String filename = obtainFilename(response.headers());
         if (StringHelper.isBlank(filename)) {
             filename = obtainFilename(response.request().url().uri());
@@ -140,7 +292,7 @@ public class DownloadTask {
      * @param headers headers to obtain a filename.
      * @return filename
      */
-    private String obtainFilename(Headers headers) {
+    private static String obtainFilename(Headers headers) {
         if (headers == null) {
             return null;
         }
@@ -169,7 +321,7 @@ public class DownloadTask {
      * @param uri uri to obtain a filename.
      * @return filename
      */
-    private String obtainFilename(URI uri) {
+    private static String obtainFilename(URI uri) {
         if (uri == null) {
             return null;
         }
@@ -186,6 +338,15 @@ public class DownloadTask {
         return filename;
     }
 
+    /**
+     * Gets the remote file URL.
+     *
+     * @return remote file URL
+     */
+    public String url() {
+        return url;
+    }
+
     /**
      * Observable progress of this download task.
      *
@@ -195,32 +356,742 @@ public class DownloadTask {
         return progress;
     }
 
+    /**
+     * Flowable progress of this download task, keeps only the latest progress for slow consumers.
+     *
+     * @return flowable progress
+     */
+    public Flowable<Progress> progressFlowable() {
+        return progress.toFlowable(BackpressureStrategy.LATEST);
+    }
+
+    /**
+     * Streams the file as chunks into memory, without writing it.
+     *
+     * <p>Bytes are read from the network only as chunks are requested, so a slow consumer
+     * slows down the transfer instead of buffering. Connections, resuming, cache and save path
+     * do not apply, the progress, checksum and rate limiters do.
+     *
+     * @param chunkSize max bytes of a chunk, every chunk but the last is full
+     * @return flowable chunks of the file
+     */
+    public Flowable<byte[]> chunks(final int chunkSize) {
+        if (StringHelper.isBlank(url)) {
+            return Flowable.error(new IllegalArgumentException("url cannot be blank."));
+        }
+        final DownloadService service = RetrofitProvider.newRetrofit(newOkHttpClient())
+                .create(DownloadService.class);
+        return Flowable.using(new Callable<ResponseBody>() {
+            @Override
+            public ResponseBody call() throws IOException {
+                retrofit2.Response<ResponseBody> response = service.downloadCall(url).execute();
+                ResponseBody body = response.body();
+                if (!response.isSuccessful() || body == null) {
+                    ResponseBody errorBody = response.errorBody();
+                    if (errorBody != null) {
+                        errorBody.close();
+                    }
+                    throw new HttpException(response);
+                }
+                return body;
+            }
+        }, new Function<ResponseBody, Publisher<byte[]>>() {
+            @Override
+            public Publisher<byte[]> apply(@NonNull ResponseBody body) {
+                final BufferedSource source = body.source();
+                return Flowable.generate(new Consumer<Emitter<byte[]>>() {
+                    @Override
+                    public void accept(Emitter<byte[]> emitter) throws Exception {
+                        if (source.request(chunkSize)) {
+                            emitter.onNext(source.readByteArray(chunkSize));
+                        } else if (source.getBuffer().size() > 0) {
+                            emitter.onNext(source.readByteArray());
+                        } else {
+                            if (checksum != null) {
+                                checksum.verify(verifier);
+                            }
+                            emitter.onComplete();
+                        }
+                    }
+                });
+            }
+        }, new Consumer<ResponseBody>() {
+            @Override
+            public void accept(ResponseBody body) {
+                body.close();
+            }
+        });
+    }
+
     /**
      * Starts this download task.
      *
+     * <p>If more than one connection is specified and the server accepts byte ranges,
+     * the file will be split into segments and fetched concurrently on the io scheduler,
+     * otherwise it will be fetched by one connection.
+     *
+     * <p>If resumable, a journal is kept next to the target file until the download completes,
+     * and the next start continues from the committed offsets if the remote file not changed.
+     *
+     * <p>If a cache is specified and has the file, the file is revalidated and copied from the cache
+     * if not modified, otherwise the downloaded file is stored in the cache.
+     *
      * @return observable file
      */
     public Observable<File> start() {
         if (StringHelper.isBlank(url)) {
             return Observable.error(new IllegalArgumentException("url cannot be blank."));
         }
-        return RetrofitProvider.get(newOkHttpClient())
+        final DownloadService service = RetrofitProvider.newRetrofit(newOkHttpClient())
+                .create(DownloadService.class);
+        return withCache(service).doOnSubscribe(new Consumer<Disposable>() {
+            @Override
+            public void accept(Disposable disposable) {
+                progressEmitter.clearRetries();
+            }
+        });
+    }
+
+    /**
+     * Downloads the file through the cache if any.
+     *
+     * @param service download service
+     * @return observable of the downloaded file
+     */
+    private Observable<File> withCache(final DownloadService service) {
+        if (cache == null) {
+            return download(service, true);
+        }
+        return Observable.defer(new Callable<ObservableSource<File>>() {
+            @Override
+            public ObservableSource<File> call() {
+                DownloadCache.Entry entry = cache.get(url);
+                if (entry == null) {
+                    return download(service, true).map(new Function<File, File>() {
+                        @Override
+                        public File apply(@NonNull File file) throws Exception {
+                            cache.put(url, headers, file);
+                            return file;
+                        }
+                    });
+                }
+                return revalidate(service, entry);
+            }
+        });
+    }
+
+    /**
+     * Downloads the file by segments or by one connection.
+     *
+     * @param service     the download service
+     * @param restartable whether to restart from offset 0 once if the remote file changed while resuming
+     * @return observable file
+     */
+    private Observable<File> download(final DownloadService service, final boolean restartable) {
+        // a compressed whole file cannot be resumed by ranges, so it is fetched again on retry.
+        if (connections <= 1 && !resumable && (retryPolicy.maxAttempts() <= 1 || compression)) {
+            return fetch(service);
+        }
+        return retry(service.probe(url)
+                .map(new Function<retrofit2.Response<Void>, retrofit2.Response<Void>>() {
+                    @Override
+                    public retrofit2.Response<Void> apply(@NonNull retrofit2.Response<Void> response) {
+                        // other failures of probe fall back to fetch the whole file.
+                        if (!response.isSuccessful() && retryPolicy.maxAttempts() > 1) {
+                            HttpException e = new HttpException(response);
+                            if (retryPolicy.isRetryable(e)) {
+                                throw e;
+                            }
+                        }
+                        return response;
+                    }
+                }))
+                .flatMap(new Function<retrofit2.Response<Void>, ObservableSource<File>>() {
+                    @Override
+                    public ObservableSource<File> apply(@NonNull retrofit2.Response<Void> response) throws Exception {
+                        Headers headers = response.headers();
+                        long length = contentLength(headers);
+                        if (!response.isSuccessful() || !"bytes".equalsIgnoreCase(headers.get("Accept-Ranges"))
+                                || length <= 0 || !isIdentity(headers)) {
+                            return fetch(service);
+                        }
+                        return fetchSegments(service, length, validator(headers), restartable);
+                    }
+                });
+    }
+
+    /**
+     * Revalidates the cached file, copies it from the cache if not modified,
+     * otherwise downloads it by one connection and stores it in the cache.
+     *
+     * @param service the download service
+     * @param entry   the cached entry
+     * @return observable file
+     */
+    private Observable<File> revalidate(DownloadService service, final DownloadCache.Entry entry) {
+        return retry(service.revalidate(url, entry.etag, entry.etag == null ? entry.lastModified : null))
+                .map(new Function<retrofit2.Response<ResponseBody>, File>() {
+                    @Override
+                    public File apply(@NonNull retrofit2.Response<ResponseBody> response) throws Exception {
+                        ResponseBody body = response.body();
+                        ResponseBody errorBody = response.errorBody();
+                        if (errorBody != null) {
+                            errorBody.close();
+                        }
+                        if (response.code() == 304) {
+                            File target = target();
+                            cache.copyTo(entry, target);
+                            if (checksum != null) {
+                                checksum.verify(target);
+                            }
+                            progressEmitter.reset(entry.length, entry.length);
+                            progressEmitter.flush();
+                            return target;
+                        }
+                        if (!response.isSuccessful() || body == null) {
+                            throw new HttpException(response);
+                        }
+                        File target = write(body, newBuffer());
+                        cache.put(url, response.headers(), target);
+                        return target;
+                    }
+                });
+    }
+
+    /**
+     * Starts this download task, streams the response into the specific stage instead of a file.
+     *
+     * <p>Processing overlaps with the transfer, and no intermediate file is written.
+     * Connections, resuming, cache and save path do not apply, the progress, checksum and
+     * rate limiters do. If a checksum is specified, bytes not consumed by the stage are skipped
+     * to complete the checksum.
+     *
+     * @param sink the stage to consume the response
+     * @param <T>  type of the result
+     * @return observable result of the stage
+     * @see DownloadSinks
+     */
+    public <T> Observable<T> start(@Nonnull final DownloadSink<T> sink) {
+        if (StringHelper.isBlank(url)) {
+            return Observable.error(new IllegalArgumentException("url cannot be blank."));
+        }
+        return RetrofitProvider.newRetrofit(newOkHttpClient())
                 .create(DownloadService.class)
                 .download(url)
-                .map(new Function<ResponseBody, File>() {
+                .map(new Function<ResponseBody, T>() {
                     @Override
-                    public File apply(@NonNull ResponseBody responseBody) throws Exception {
-                        InputStream stream = responseBody.byteStream();
-                        Preconditions.require(savePath.exists() || savePath.mkdirs(), new IOException("cannot mkdirs."));
-                        File target = new File(savePath, filename);
-                        OutputStream out = new FileOutputStream(target);
-                        IOHelper.transfer(stream, out);
-                        IOHelper.close(stream, out);
+                    public T apply(@NonNull ResponseBody responseBody) throws Exception {
+                        try {
+                            BufferedSource source = responseBody.source();
+                            T result = sink.consume(source);
+                            if (checksum != null) {
+                                source.readAll(Okio.blackhole());
+                                checksum.verify(verifier);
+                            }
+                            return result;
+                        } finally {
+                            IOHelper.close(responseBody);
+                        }
+                    }
+                });
+    }
+
+    /**
+     * Fetches the whole file by one connection.
+     *
+     * @param service the download service
+     * @return observable file
+     */
+    private Observable<File> fetch(final DownloadService service) {
+        return Observable.defer(new Callable<ObservableSource<File>>() {
+            @Override
+            public ObservableSource<File> call() {
+                // shared by every attempt of the stream.
+                final ByteBuffer buffer = newBuffer();
+                return retry(service.download(url)
+                        .map(new Function<ResponseBody, File>() {
+                            @Override
+                            public File apply(@NonNull ResponseBody responseBody) throws Exception {
+                                return write(responseBody, buffer);
+                            }
+                        }));
+            }
+        });
+    }
+
+    /**
+     * Retries the specific observable on failure by the retry policy.
+     *
+     * <p>Retries are counted over the whole download, and published by the progress.
+     *
+     * @param source observable to retry, will be subscribed again on retry
+     * @param <T>    type of items
+     * @return observable with retry
+     */
+    private <T> Observable<T> retry(Observable<T> source) {
+        if (retryPolicy.maxAttempts() <= 1) {
+            return source;
+        }
+        return source.retryWhen(new Function<Observable<Throwable>, ObservableSource<?>>() {
+            @Override
+            public ObservableSource<?> apply(@NonNull Observable<Throwable> errors) {
+                return errors.flatMap(new Function<Throwable, ObservableSource<Long>>() {
+                    @Override
+                    public ObservableSource<Long> apply(@NonNull Throwable throwable) {
+                        // a changed remote file is fetched again from offset 0 instead of by the same range.
+                        int retry = retryPolicy.isRetryable(throwable) && !(throwable instanceof RemoteChangedException)
+                                ? progressEmitter.retry(retryPolicy.maxAttempts() - 1)
+                                : -1;
+                        if (retry < 0) {
+                            return Observable.error(throwable);
+                        }
+                        return Observable.timer(retryPolicy.delay(retry), TimeUnit.MILLISECONDS);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Writes the body of a whole file response into the target file,
+     * and verifies the checksum computed while streaming if specified.
+     *
+     * @param body   the response body
+     * @param buffer the buffer of positional writes
+     * @return target file
+     * @throws IOException if failed to write, or the checksum mismatched
+     */
+    private File write(ResponseBody body, ByteBuffer buffer) throws IOException {
+        File target = target();
+        File file = working(target);
+        DownloadJournal.fileOf(target).delete();
+        long length = body.contentLength();
+        if (preallocate && length > 0) {
+            FileAllocator.requireSpace(savePath, length);
+        }
+        RandomAccessFile out = new RandomAccessFile(file, "rw");
+        Segment segment = Segment.from(0);
+        try {
+            if (preallocate && length > 0) {
+                FileAllocator.allocate(out, length, true);
+            }
+            drain(body.source(), out.getChannel(), segment, null, buffer);
+            // truncates bytes beyond the body, preallocated or left by a previous file.
+            out.setLength(segment.position);
+        } finally {
+            IOHelper.close(body, out);
+        }
+        if (checksum != null) {
+            Checksum.Verifier verifier = this.verifier;
+            // a body not fed to a verifier while streaming is verified by reading the written file.
+            if (verifier != null) {
+                checksum.verify(verifier, file);
+            } else {
+                checksum.verify(file);
+            }
+        }
+        if (file != target) {
+            FileAllocator.commit(file, target);
+        }
+        return target;
+    }
+
+    /**
+     * Fetches the file by segments concurrently, each segment is written into its offset of the file.
+     *
+     * <p>If a checksum is specified, it is verified over the assembled file once all segments completed.
+     *
+     * @param service     the download service
+     * @param length      length of the file
+     * @param validator   ETag or Last-Modified of the file, null if absent
+     * @param restartable whether to restart from offset 0 once if the remote file changed while resuming
+     * @return observable file
+     * @throws IOException if failed to preallocate the file
+     */
+    private Observable<File> fetchSegments(final DownloadService service, long length, @Nullable String validator,
+                                           final boolean restartable) throws IOException {
+        final File target = target();
+        final File file = working(target);
+        final DownloadJournal journal = resumable && validator != null
+                ? openJournal(target, file, length, validator)
+                : null;
+        List<Segment> segments = journal != null
+                ? journal.segments
+                : new CopyOnWriteArrayList<>(Segment.split(length, connections));
+        if (preallocate) {
+            FileAllocator.requireSpace(savePath, length - (file.exists() ? file.length() : 0));
+        }
+        RandomAccessFile out = new RandomAccessFile(file, "rw");
+        try {
+            FileAllocator.allocate(out, length, preallocate);
+        } finally {
+            IOHelper.close(out);
+        }
+        progressEmitter.reset(journal != null ? journal.committed() : 0, length);
+        final String ifRange = journal != null ? journal.validator : null;
+        final SegmentScheduler scheduler = new SegmentScheduler(segments, minSegmentSize);
+        final AtomicBoolean failed = new AtomicBoolean();
+        return Observable.range(0, Math.max(connections, 1))
+                .flatMap(new Function<Integer, ObservableSource<Segment>>() {
+                    @Override
+                    public ObservableSource<Segment> apply(@NonNull Integer worker) {
+                        return fetchScheduled(service, file, scheduler, journal, ifRange, newBuffer())
+                                .onErrorResumeNext(new Function<Throwable, ObservableSource<Segment>>() {
+                                    @Override
+                                    public ObservableSource<Segment> apply(@NonNull Throwable throwable) {
+                                        // only the first failure is delivered, the others are caused by
+                                        // cancelling the rest connections and have nowhere to go.
+                                        return failed.getAndSet(true)
+                                                ? Observable.<Segment>empty()
+                                                : Observable.<Segment>error(throwable);
+                                    }
+                                });
+                    }
+                })
+                .ignoreElements()
+                .andThen(Observable.fromCallable(new Callable<File>() {
+                    @Override
+                    public File call() throws IOException {
+                        if (journal != null) {
+                            journal.delete();
+                        }
+                        // ranges are not streamed through a verifier, the assembled file is verified instead.
+                        if (checksum != null) {
+                            checksum.verify(file);
+                        }
+                        if (file != target) {
+                            FileAllocator.commit(file, target);
+                        }
+                        progressEmitter.flush();
                         return target;
                     }
+                }))
+                .doOnError(new Consumer<Throwable>() {
+                    @Override
+                    public void accept(Throwable throwable) {
+                        checkpoint(journal);
+                    }
+                })
+                .doOnDispose(new Action() {
+                    @Override
+                    public void run() {
+                        checkpoint(journal);
+                    }
+                })
+                .onErrorResumeNext(new Function<Throwable, ObservableSource<File>>() {
+                    @Override
+                    public ObservableSource<File> apply(@NonNull Throwable throwable) {
+                        // the journal has been deleted, so the file is probed again and fetched from offset 0.
+                        if (throwable instanceof RemoteChangedException && restartable) {
+                            return download(service, false);
+                        }
+                        return Observable.error(throwable);
+                    }
                 });
     }
 
+    /**
+     * Commits the journal if not completed, to resume from current positions next time.
+     *
+     * <p>Failures are logged, the next start fetches again from the last committed positions.
+     *
+     * @param journal the journal to commit, nullable
+     */
+    private static void checkpoint(@Nullable DownloadJournal journal) {
+        if (journal == null || journal.isCompleted()) {
+            return;
+        }
+        try {
+            journal.commit();
+        } catch (IOException e) {
+            Log.w("DownloadTask", "Cannot commit the journal.", e);
+        }
+    }
+
+    /**
+     * Fetches segments taken from the scheduler one after another by a connection, until no work is left.
+     *
+     * @param service   download service
+     * @param target    file to write, the target file or its partial file
+     * @param scheduler scheduler of segments
+     * @param journal   journal to commit, nullable
+     * @param ifRange   validator to send as {@code If-Range}, nullable
+     * @param buffer    buffer of positional writes, shared by the segments of the connection
+     * @return observable of fetched segments
+     */
+    private Observable<Segment> fetchScheduled(final DownloadService service, final File target,
+                                               final SegmentScheduler scheduler,
+                                               @Nullable final DownloadJournal journal,
+                                               @Nullable final String ifRange, final ByteBuffer buffer) {
+        final boolean[] idle = new boolean[1];
+        return Observable.defer(new Callable<ObservableSource<Segment>>() {
+            @Override
+            public ObservableSource<Segment> call() {
+                final Segment segment = scheduler.next();
+                idle[0] = segment == null;
+                if (segment == null) {
+                    return Observable.empty();
+                }
+                // deferred to request the range from the last byte written on retry.
+                return retry(Observable.defer(new Callable<ObservableSource<Segment>>() {
+                    @Override
+                    public ObservableSource<Segment> call() {
+                        if (segment.isCompleted()) {
+                            return Observable.just(segment);
+                        }
+                        return service.download(url, segment.range(), ifRange)
+                                .map(new Function<retrofit2.Response<ResponseBody>, Segment>() {
+                                    @Override
+                                    public Segment apply(@NonNull retrofit2.Response<ResponseBody> response)
+                                            throws Exception {
+                                        write(response, target, segment, journal, buffer);
+                                        return segment;
+                                    }
+                                });
+                    }
+                }).subscribeOn(Schedulers.io()));
+            }
+        }).repeatUntil(new BooleanSupplier() {
+            @Override
+            public boolean getAsBoolean() {
+                return idle[0];
+            }
+        });
+    }
+
+    /**
+     * Opens the journal of the target file, reuses the existing one if it matches the remote file.
+     *
+     * @param target    the target file
+     * @param file      the file to write, the target file or its partial file
+     * @param length    length of the remote file
+     * @param validator validator of the remote file
+     * @return journal of the target file
+     * @throws IOException if failed to write the journal
+     */
+    private DownloadJournal openJournal(File target, File file, long length, String validator)
+            throws IOException {
+        File journalFile = DownloadJournal.fileOf(target);
+        DownloadJournal journal = DownloadJournal.load(journalFile);
+        if (journal != null && journal.length == length && validator.equals(journal.validator)
+                && file.length() == length) {
+            return journal;
+        }
+        journal = new DownloadJournal(journalFile, validator, length,
+                Segment.split(length, Math.max(connections, 1)));
+        journal.commit();
+        return journal;
+    }
+
+    /**
+     * Writes the body of a range response into the offset of the segment.
+     *
+     * <p>If the journal is not null, the position of the segment is committed every
+     * {@link #CHECKPOINT_BYTES} bytes.
+     *
+     * @param response the range response
+     * @param target   the file to write, the target file or its partial file
+     * @param segment  the segment to write
+     * @param journal  the journal to commit, nullable
+     * @param buffer   the buffer of positional writes
+     * @throws IOException if the range is not satisfied, or failed to write
+     */
+    private void write(retrofit2.Response<ResponseBody> response, File target, Segment segment,
+                       @Nullable DownloadJournal journal, ByteBuffer buffer) throws IOException {
+        ResponseBody body = response.body();
+        if (!response.isSuccessful()) {
+            ResponseBody errorBody = response.errorBody();
+            if (errorBody != null) {
+                errorBody.close();
+            }
+            throw new HttpException(response);
+        }
+        if (response.code() != 206 || body == null) {
+            if (body != null) {
+                body.close();
+            }
+            if (journal != null && response.code() == 200) {
+                journal.delete();
+                throw new RemoteChangedException("remote file changed, cannot resume " + segment.range());
+            }
+            throw new IOException("range " + segment.range() + " not satisfied, code: " + response.code());
+        }
+        RandomAccessFile out = new RandomAccessFile(target, "rw");
+        try {
+            drain(body.source(), out.getChannel(), segment, journal, buffer);
+        } finally {
+            IOHelper.close(body, out);
+        }
+        if (!segment.isCompleted()) {
+            throw new EOFException("unexpected end of range " + segment.range());
+        }
+    }
+
+    /**
+     * Drains the source into the channel from the position of the segment, until the segment
+     * is completed or the source is exhausted.
+     *
+     * <p>Bytes are moved from the source into a direct buffer and written by positional writes
+     * of up to {@link #WRITE_BUFFER_BYTES} bytes, without an intermediate heap array.
+     * If the journal is not null, the position of the segment is committed every
+     * {@link #CHECKPOINT_BYTES} bytes.
+     *
+     * @param source  the source to drain
+     * @param channel the channel to write
+     * @param segment the segment to write, its position is advanced
+     * @param journal the journal to commit, nullable
+     * @param buffer  the buffer of positional writes, reused by the caller
+     * @throws IOException if failed to read or write
+     */
+    private void drain(BufferedSource source, FileChannel channel, Segment segment,
+                       @Nullable DownloadJournal journal, ByteBuffer buffer) throws IOException {
+        long checkpoint = segment.position + CHECKPOINT_BYTES;
+        while (!segment.isCompleted()) {
+            buffer.clear();
+            // the end may be shrunk by work stealing while filling, so stop reading as soon as possible.
+            try {
+                while (buffer.position() < Math.min(buffer.capacity(), segment.remaining())) {
+                    buffer.limit((int) Math.min(buffer.capacity(), segment.remaining()));
+                    if (source.read(buffer) == -1) {
+                        break;
+                    }
+                }
+            } catch (IOException e) {
+                // bytes read but not written will be read again on retry.
+                progressEmitter.retract(buffer.position() + source.getBuffer().size());
+                throw e;
+            }
+            buffer.flip();
+            if (!buffer.hasRemaining()) {
+                break;
+            }
+            long filled = buffer.remaining();
+            long position = segment.position;
+            long discarded;
+            try {
+                discarded = segment.write(channel, buffer);
+            } catch (IOException e) {
+                progressEmitter.retract(filled - (segment.position - position) + source.getBuffer().size());
+                throw e;
+            }
+            if (discarded > 0) {
+                progressEmitter.retract(discarded);
+            }
+            if (journal != null && segment.position >= checkpoint) {
+                if (syncPolicy == SyncPolicy.ON_CHECKPOINT) {
+                    channel.force(false);
+                }
+                journal.commit();
+                checkpoint = segment.position + CHECKPOINT_BYTES;
+            }
+        }
+        // bytes beyond a shrunk end have been counted once buffered by the source, but are never written.
+        progressEmitter.retract(source.getBuffer().size());
+        if (syncPolicy != SyncPolicy.NONE) {
+            channel.force(false);
+        }
+    }
+
+    /**
+     * Allocates a buffer of positional writes, one per connection since a direct buffer is costly
+     * to allocate and released late.
+     *
+     * @return new direct buffer of {@link #WRITE_BUFFER_BYTES} bytes
+     */
+    private static ByteBuffer newBuffer() {
+        return ByteBuffer.allocateDirect(WRITE_BUFFER_BYTES);
+    }
+
+    /**
+     * Returns the target file in the save path, creates the save path if not exists.
+     *
+     * @return target file
+     * @throws IOException if failed to create the save path
+     */
+    private File target() throws IOException {
+        Preconditions.require(savePath.exists() || savePath.mkdirs(), new StorageException("cannot mkdirs."));
+        return new File(savePath, filename);
+    }
+
+    /**
+     * Returns the file to write of the target file.
+     *
+     * @param target the target file
+     * @return partial file if enabled, otherwise the target file
+     */
+    private File working(File target) {
+        return partFile ? FileAllocator.partOf(target) : target;
+    }
+
+    /**
+     * Obtains a validator from the headers to resume with {@code If-Range}.
+     *
+     * <p>A strong ETag is preferred, weak ETags cannot be used with {@code If-Range}.
+     *
+     * @param headers headers to obtain a validator
+     * @return ETag or Last-Modified, null if absent
+     */
+    @Nullable
+    private static String validator(Headers headers) {
+        String etag = headers.get("ETag");
+        if (etag != null && !etag.startsWith("W/")) {
+            return etag;
+        }
+        return headers.get("Last-Modified");
+    }
+
+    /**
+     * Returns a value whether the headers describe the content without any content coding.
+     *
+     * <p>A server may ignore {@code Accept-Encoding: identity}, then the length and validator
+     * describe the encoded bytes, which cannot be fetched by ranges of the file.
+     *
+     * @param headers headers of the response
+     * @return {@code true} if no content coding is applied
+     */
+    private static boolean isIdentity(Headers headers) {
+        String contentEncoding = headers.get("Content-Encoding");
+        return contentEncoding == null || "identity".equalsIgnoreCase(contentEncoding.trim());
+    }
+
+    /**
+     * Obtains the content length from the headers.
+     *
+     * @param headers headers to obtain the content length
+     * @return content length, or -1 if unknown
+     */
+    private static long contentLength(Headers headers) {
+        String value = headers.get("Content-Length");
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Thrown if the remote file changed since the journal was opened, so that the range cannot be resumed.
+     */
+    private static class RemoteChangedException extends IOException {
+
+        /**
+         * Version of the serialized form.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Constructs an instance with the specific detail message.
+         *
+         * @param message the detail message
+         */
+        RemoteChangedException(String message) {
+            super(message);
+        }
+    }
+
     /**
      * Builder of {@link DownloadTask}
      *
@@ -248,6 +1119,66 @@ public class DownloadTask {
          */
         OkHttpClient client;
 
+        /**
+         * Count of connections to fetch the file.
+         */
+        int connections = 1;
+
+        /**
+         * Minimum size of a split segment.
+         */
+        long minSegmentSize = DEFAULT_MIN_SEGMENT_BYTES;
+
+        /**
+         * Whether to resume an interrupted download.
+         */
+        boolean resumable;
+
+        /**
+         * Sampling policy of the progress.
+         */
+        ProgressSampling sampling = ProgressSampling.none();
+
+        /**
+         * Policy to sync written bytes.
+         */
+        SyncPolicy syncPolicy = SyncPolicy.NONE;
+
+        /**
+         * Cache of downloaded files.
+         */
+        DownloadCache cache;
+
+        /**
+         * Expected checksum of the file.
+         */
+        Checksum checksum;
+
+        /**
+         * Rate limiters of the transfer.
+         */
+        RateLimiter[] rateLimiters = new RateLimiter[0];
+
+        /**
+         * Whether to negotiate compression.
+         */
+        boolean compression;
+
+        /**
+         * Retry policy of failed requests.
+         */
+        RetryPolicy retryPolicy = RetryPolicy.none();
+
+        /**
+         * Whether to allocate the full size before transfer.
+         */
+        boolean preallocate;
+
+        /**
+         * Whether to write into a partial file.
+         */
+        boolean partFile;
+
         /**
          * Sets the save path.
          *
@@ -292,6 +1223,183 @@ public class DownloadTask {
             return this;
         }
 
+        /**
+         * Sets the count of connections, fetches the file by segments concurrently if greater than 1.
+         *
+         * <p>Segmented download only takes effect when the server accepts byte ranges
+         * and responds the content length.
+         *
+         * @param connections the specific count of connections
+         * @return current builder
+         * @throws IllegalArgumentException if not positive
+         */
+        public Builder connections(int connections) {
+            Preconditions.require(connections > 0,
+                    new IllegalArgumentException("connections must be positive."));
+            this.connections = connections;
+            return this;
+        }
+
+        /**
+         * Sets the minimum size of a segment split for work stealing, default is 512 KiB.
+         *
+         * <p>In segmented download, a connection that finishes its segment early takes over
+         * the second half of the remaining bytes of the slowest one, as long as both halves
+         * are not smaller than this size.
+         *
+         * @param minSegmentSize the specific minimum size in bytes
+         * @return current builder
+         * @throws IllegalArgumentException if not positive
+         */
+        public Builder minSegmentSize(long minSegmentSize) {
+            Preconditions.require(minSegmentSize > 0,
+                    new IllegalArgumentException("minSegmentSize must be positive."));
+            this.minSegmentSize = minSegmentSize;
+            return this;
+        }
+
+        /**
+         * Sets whether to resume an interrupted download.
+         *
+         * <p>If true, a journal is kept next to the target file, and the next start of the same
+         * download continues from the last committed offset, as long as the server accepts byte
+         * ranges and the remote file has an ETag or Last-Modified that has not changed.
+         *
+         * @param resumable whether to resume
+         * @return current builder
+         */
+        public Builder resumable(boolean resumable) {
+            this.resumable = resumable;
+            return this;
+        }
+
+        /**
+         * Sets the sampling policy of the progress, default is to emit every read.
+         *
+         * <p>A new progress is emitted each time, unless reused by the sampling policy.
+         *
+         * @param sampling the specific sampling policy
+         * @return current builder
+         * @see ProgressSampling#reuseProgress()
+         */
+        public Builder sampling(@Nonnull ProgressSampling sampling) {
+            this.sampling = sampling;
+            return this;
+        }
+
+        /**
+         * Sets the policy to sync written bytes to the storage device, default is {@link SyncPolicy#NONE}.
+         *
+         * @param syncPolicy the specific policy
+         * @return current builder
+         */
+        public Builder syncPolicy(@Nonnull SyncPolicy syncPolicy) {
+            this.syncPolicy = syncPolicy;
+            return this;
+        }
+
+        /**
+         * Sets the cache of downloaded files.
+         *
+         * <p>A cached file is revalidated with {@code If-None-Match} or {@code If-Modified-Since},
+         * and copied from the cache if not modified.
+         *
+         * @param cache the specific cache
+         * @return current builder
+         */
+        public Builder cache(@Nullable DownloadCache cache) {
+            this.cache = cache;
+            return this;
+        }
+
+        /**
+         * Sets the expected checksum of the file.
+         *
+         * <p>The checksum is computed as bytes stream past when fetched by one connection,
+         * or by reading the file once completed when fetched by segments, resumed or copied from the cache.
+         * If mismatched, the file is deleted and the task fails with an {@link IOException}.
+         *
+         * @param checksum the specific checksum
+         * @return current builder
+         */
+        public Builder checksum(@Nullable Checksum checksum) {
+            this.checksum = checksum;
+            return this;
+        }
+
+        /**
+         * Sets the rate limiters of the transfer, bytes read are acquired from all of them.
+         *
+         * <p>Use a limiter per task to limit the task, and share a limiter among tasks
+         * to limit them as a whole, such as background downloads.
+         *
+         * @param rateLimiters the specific rate limiters
+         * @return current builder
+         */
+        public Builder rateLimiters(@Nonnull RateLimiter... rateLimiters) {
+            this.rateLimiters = rateLimiters.clone();
+            return this;
+        }
+
+        /**
+         * Sets whether to negotiate compression with {@code Accept-Encoding: gzip, deflate}
+         * and decode the response while streaming.
+         *
+         * <p>The progress reports bytes on the wire as current and total, and the decoded bytes
+         * as {@link Progress#decoded()}. Fetching by segments is not affected, since ranges
+         * are requested without compression.
+         *
+         * @param compression whether to negotiate compression
+         * @return current builder
+         */
+        public Builder compression(boolean compression) {
+            this.compression = compression;
+            return this;
+        }
+
+        /**
+         * Sets the retry policy of failed requests, default is never to retry.
+         *
+         * <p>On retry, a file fetched by ranges continues from the last byte written instead of
+         * fetching again, such as with multiple connections, resumable, or single connection
+         * without compression when the server accepts byte ranges. The count of retries is
+         * published by the progress.
+         *
+         * @param retryPolicy the specific retry policy
+         * @return current builder
+         * @see Progress#retries()
+         */
+        public Builder retryPolicy(@Nonnull RetryPolicy retryPolicy) {
+            this.retryPolicy = retryPolicy;
+            return this;
+        }
+
+        /**
+         * Sets whether to allocate the full size of the file before transfer, when the length is known.
+         *
+         * <p>If true, the download fails before any byte of the body is transferred when the save path
+         * has insufficient usable space, and the file does not fragment as it grows.
+         *
+         * @param preallocate whether to preallocate
+         * @return current builder
+         */
+        public Builder preallocate(boolean preallocate) {
+            this.preallocate = preallocate;
+            return this;
+        }
+
+        /**
+         * Sets whether to write into a partial file with {@code .part} suffix, which is renamed
+         * to the target file on completion, so that the target file is never seen incomplete.
+         *
+         * @param partFile whether to write into a partial file
+         * @return current builder
+         */
+        public Builder partFile(boolean partFile) {
+            this.partFile = partFile;
+            return this;
+        }
+
         /**
          * Builds a {@code DownloadTask} with this builder.
          *
@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2019 sea
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package top.srsea.lever.network;
+
+import android.os.Build;
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.OsConstants;
+
+import androidx.annotation.RequiresApi;
+
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * Allocates the full size of a download file before transfer.
+ *
+ * @author sea
+ */
+class FileAllocator {
+
+    /**
+     * Suffix of a partial file, renamed to the target file on completion.
+     */
+    static final String PART_SUFFIX = ".part";
+
+    /**
+     * Fails if the file system of the directory cannot hold the specific bytes.
+     *
+     * @param dir      directory of the file
+     * @param required bytes to write
+     * @throws IOException if the usable space is insufficient
+     */
+    static void requireSpace(File dir, long required) throws IOException {
+        long usable = dir.getUsableSpace();
+        // 0 is returned if the usable space cannot be obtained.
+        if (required > 0 && usable > 0 && usable < required) {
+            throw new InsufficientSpaceException("insufficient space, required: " + required + ", usable: " + usable);
+        }
+    }
+
+    /**
+     * Sets the length of the file, and allocates blocks of the file if supported,
+     * so that the file does not fragment or run out of space halfway.
+     *
+     * <p>Blocks are allocated by {@code posix_fallocate} since Lollipop, otherwise the file is sparse.
+     *
+     * @param file   the file
+     * @param length length of the file
+     * @param blocks whether to allocate blocks
+     * @throws IOException if the file system is full or an I/O error occurs
+     */
+    static void allocate(RandomAccessFile file, long length, boolean blocks) throws IOException {
+        if (blocks && Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            Fallocate.allocate(file.getFD(), length);
+        }
+        file.setLength(length);
+    }
+
+    /**
+     * Returns the partial file of the target file.
+     *
+     * @param target the target file
+     * @return partial file
+     */
+    static File partOf(File target) {
+        return new File(target.getParentFile(), target.getName() + PART_SUFFIX);
+    }
+
+    /**
+     * Renames the partial file to the target file, replaces the existing one.
+     *
+     * @param part   the partial file
+     * @param target the target file
+     * @throws IOException if failed to rename
+     */
+    static void commit(File part, File target) throws IOException {
+        if (!part.renameTo(target)) {
+            throw new IOException("cannot rename " + part + " to " + target);
+        }
+    }
+
+    /**
+     * Calls of {@code posix_fallocate}, in a class of its own so that {@link ErrnoException}
+     * is only resolved on Lollipop and above, where it exists.
+     */
+    @RequiresApi(Build.VERSION_CODES.LOLLIPOP)
+    private static class Fallocate {
+
+        /**
+         * Allocates blocks of the file.
+         *
+         * @param fd     descriptor of the file
+         * @param length length of the file
+         * @throws IOException if the file system is full
+         */
+        static void allocate(FileDescriptor fd, long length) throws IOException {
+            try {
+                Os.posix_fallocate(fd, 0, length);
+            } catch (ErrnoException e) {
+                if (e.errno == OsConstants.ENOSPC) {
+                    throw new InsufficientSpaceException("insufficient space, required: " + length, e);
+                }
+                // not supported by the file system, falls back to a sparse file.
+            }
+        }
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2019 sea
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package top.srsea.lever.network;
+
+/**
+ * Thrown if the file system has insufficient space for a download.
+ *
+ * @author sea
+ */
+public class InsufficientSpaceException extends StorageException {
+
+    /**
+     * Version of the serialized form.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructs an instance with the specific detail message.
+     *
+     * @param message the detail message
+     */
+    public InsufficientSpaceException(String message) {
+        super(message);
+    }
+
+    /**
+     * Constructs an instance with the specific detail message and cause.
+     *
+     * @param message the detail message
+     * @param cause   the cause
+     */
+    public InsufficientSpaceException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
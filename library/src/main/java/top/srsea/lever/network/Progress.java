@@ -33,6 +33,26 @@ public class Progress {
      */
     private long total;
 
+    /**
+     * Decoded bytes, differs from current if the content is compressed on the wire.
+     */
+    private long decoded;
+
+    /**
+     * Current speed, usual as bytes per second, 0 if unknown.
+     */
+    private long speed;
+
+    /**
+     * Estimated time to complete in milliseconds, -1 if unknown.
+     */
+    private long eta = -1;
+
+    /**
+     * Retries of the transfer.
+     */
+    private int retries;
+
     /**
      * Constructs an instance with current and total.
      *
@@ -42,6 +62,7 @@ public class Progress {
     public Progress(long current, long total) {
         this.current = current;
         this.total = total;
+        this.decoded = current;
     }
 
     /**
@@ -81,6 +102,97 @@ public class Progress {
         this.total = total;
     }
 
+    /**
+     * Gets the decoded bytes.
+     *
+     * <p>For a download compressed on the wire, current and total are bytes on the wire,
+     * and this is the bytes after decompression.
+     *
+     * @return decoded bytes
+     */
+    public long decoded() {
+        return decoded;
+    }
+
+    /**
+     * Sets the decoded bytes.
+     *
+     * @param decoded decoded bytes
+     */
+    public void setDecoded(long decoded) {
+        this.decoded = decoded;
+    }
+
+    /**
+     * Gets the current speed.
+     *
+     * @return current speed, usual as bytes per second, 0 if unknown
+     */
+    public long speed() {
+        return speed;
+    }
+
+    /**
+     * Sets the current speed.
+     *
+     * @param speed current speed
+     */
+    public void setSpeed(long speed) {
+        this.speed = speed;
+    }
+
+    /**
+     * Gets the estimated time to complete.
+     *
+     * @return estimated time in milliseconds, -1 if unknown
+     */
+    public long eta() {
+        return eta;
+    }
+
+    /**
+     * Sets the estimated time to complete.
+     *
+     * @param eta estimated time in milliseconds
+     */
+    public void setEta(long eta) {
+        this.eta = eta;
+    }
+
+    /**
+     * Gets the count of retries of the transfer.
+     *
+     * @return count of retries, 0 if never retried
+     */
+    public int retries() {
+        return retries;
+    }
+
+    /**
+     * Sets the count of retries.
+     *
+     * @param retries count of retries
+     */
+    public void setRetries(int retries) {
+        this.retries = retries;
+    }
+
+    /**
+     * Returns a copy of this progress.
+     *
+     * <p>Progress emitted with {@link ProgressSampling#reuseProgress()} is reused, copy it to retain the values.
+     *
+     * @return a copy of this progress
+     */
+    public Progress copy() {
+        Progress copy = new Progress(current, total);
+        copy.decoded = decoded;
+        copy.speed = speed;
+        copy.eta = eta;
+        copy.retries = retries;
+        return copy;
+    }
+
     /**
      * Returns the ratio between current and total.
      *
@@ -0,0 +1,288 @@
+/*
+ * Copyright (C) 2019 sea
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package top.srsea.lever.network;
+
+import io.reactivex.Observer;
+
+/**
+ * Accumulates bytes of a transfer, and emits progress with speed and ETA
+ * according to the sampling policy.
+ *
+ * <p>Thread safe, may be shared by responses of the same file. The observer is called outside the lock,
+ * by one thread at a time, so a slow observer never blocks other threads, which leave their latest
+ * values to that thread instead, and an observer may call back into the emitter.
+ *
+ * @author sea
+ */
+class ProgressEmitter {
+
+    /**
+     * Weight of the latest sample in the smoothed speed.
+     */
+    private static final double SPEED_WEIGHT = 0.3;
+
+    /**
+     * Observer of the progress, to publish progress.
+     */
+    private final Observer<Progress> observer;
+
+    /**
+     * Sampling policy.
+     */
+    private final ProgressSampling sampling;
+
+    /**
+     * Reused progress to emit if the sampling policy reuses it, accessed by the emitting thread only.
+     */
+    private final Progress progress = new Progress(0, 0);
+
+    /**
+     * Latest values not emitted yet.
+     */
+    private final Progress pending = new Progress(0, 0);
+
+    /**
+     * Whether the pending values are newer than the emitted ones.
+     */
+    private boolean hasPending;
+
+    /**
+     * Whether a thread is emitting, the other threads leave their values to it.
+     */
+    private boolean emitting;
+
+    /**
+     * Current bytes read.
+     */
+    private long current;
+
+    /**
+     * Total bytes.
+     */
+    private long total;
+
+    /**
+     * Current bytes decoded.
+     */
+    private long decoded;
+
+    /**
+     * Decoded bytes of the last emission.
+     */
+    private long lastDecoded;
+
+    /**
+     * Current bytes of the last emission.
+     */
+    private long lastCurrent;
+
+    /**
+     * Time of the last emission.
+     */
+    private long lastNanos;
+
+    /**
+     * Smoothed speed in bytes per second.
+     */
+    private double speed;
+
+    /**
+     * Retries of the download, kept across resets.
+     */
+    private int retries;
+
+    /**
+     * Whether emitted since the last reset.
+     */
+    private boolean emitted;
+
+    /**
+     * Constructs an instance.
+     *
+     * @param observer observer of the progress
+     * @param sampling sampling policy
+     */
+    ProgressEmitter(Observer<Progress> observer, ProgressSampling sampling) {
+        this.observer = observer;
+        this.sampling = sampling;
+    }
+
+    /**
+     * Resets the transfer, without emission.
+     *
+     * @param current bytes already transferred, such as a resumed offset
+     * @param total   total bytes, not positive if unknown
+     */
+    synchronized void reset(long current, long total) {
+        this.current = current;
+        this.total = total;
+        decoded = current;
+        lastCurrent = current;
+        lastDecoded = current;
+        lastNanos = System.nanoTime();
+        speed = 0;
+        emitted = false;
+    }
+
+    /**
+     * Accumulates bytes read, emits if accepted by the sampling policy.
+     *
+     * @param bytes bytes read
+     */
+    void advance(long bytes) {
+        boolean drain = false;
+        synchronized (this) {
+            current += bytes;
+            long now = System.nanoTime();
+            if (sampling.accept(lastCurrent, lastNanos, current, total, now)) {
+                drain = sample(now);
+            }
+        }
+        if (drain) {
+            drain();
+        }
+    }
+
+    /**
+     * Clears the retries at the start of a download.
+     */
+    synchronized void clearRetries() {
+        retries = 0;
+    }
+
+    /**
+     * Counts a retry and emits it, unless the retries have reached the specific limit.
+     *
+     * @param maxRetries max retries of the download
+     * @return count of retries including this one, or {@code -1} if reached the limit
+     */
+    int retry(int maxRetries) {
+        int retries;
+        boolean drain;
+        synchronized (this) {
+            if (this.retries >= maxRetries) {
+                return -1;
+            }
+            retries = ++this.retries;
+            drain = sample(System.nanoTime());
+        }
+        if (drain) {
+            drain();
+        }
+        return retries;
+    }
+
+    /**
+     * Takes back bytes read but discarded, such as bytes beyond a segment shrunk by work stealing,
+     * or bytes not written before a failure, which will be read again, without emission.
+     *
+     * @param bytes bytes discarded
+     */
+    synchronized void retract(long bytes) {
+        current -= bytes;
+        decoded -= bytes;
+    }
+
+    /**
+     * Accumulates bytes decoded, without emission.
+     *
+     * @param bytes bytes decoded
+     */
+    synchronized void advanceDecoded(long bytes) {
+        decoded += bytes;
+    }
+
+    /**
+     * Emits current progress regardless of the sampling policy at the end of a transfer,
+     * unless it has been emitted.
+     */
+    void flush() {
+        boolean drain = false;
+        synchronized (this) {
+            if (!emitted || current != lastCurrent || decoded != lastDecoded) {
+                drain = sample(System.nanoTime());
+            }
+        }
+        if (drain) {
+            drain();
+        }
+    }
+
+    /**
+     * Takes a sample of current values as pending, must be called with the lock held.
+     *
+     * @param now current time
+     * @return {@code true} if the caller should drain the pending values, otherwise another thread is emitting
+     */
+    private boolean sample(long now) {
+        long elapsed = now - lastNanos;
+        if (elapsed > 0 && current > lastCurrent) {
+            double sample = (current - lastCurrent) * 1e9 / elapsed;
+            speed = speed <= 0 ? sample : speed + SPEED_WEIGHT * (sample - speed);
+        }
+        lastCurrent = current;
+        lastDecoded = decoded;
+        lastNanos = now;
+        emitted = true;
+        pending.setCurrent(current);
+        pending.setTotal(total);
+        pending.setDecoded(decoded);
+        pending.setSpeed((long) speed);
+        pending.setEta(speed > 0 && total > 0 ? (long) (Math.max(total - current, 0) * 1000 / speed) : -1);
+        pending.setRetries(retries);
+        hasPending = true;
+        if (emitting) {
+            return false;
+        }
+        emitting = true;
+        return true;
+    }
+
+    /**
+     * Emits the pending values outside the lock, until no newer values are left by other threads.
+     */
+    private void drain() {
+        while (true) {
+            Progress progress = sampling.reusesProgress() ? this.progress : new Progress(0, 0);
+            synchronized (this) {
+                if (!hasPending) {
+                    emitting = false;
+                    return;
+                }
+                hasPending = false;
+                progress.setCurrent(pending.current());
+                progress.setTotal(pending.total());
+                progress.setDecoded(pending.decoded());
+                progress.setSpeed(pending.speed());
+                progress.setEta(pending.eta());
+                progress.setRetries(pending.retries());
+            }
+            boolean emitted = false;
+            try {
+                observer.onNext(progress);
+                emitted = true;
+            } finally {
+                if (!emitted) {
+                    // lets the next emission through after the observer throws.
+                    synchronized (this) {
+                        emitting = false;
+                    }
+                }
+            }
+        }
+    }
+}
@@ -22,7 +22,9 @@ import okhttp3.ResponseBody;
 import okio.*;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.io.IOException;
+import java.util.zip.Inflater;
 
 /**
  * A typical ResponseBody with progress.
@@ -38,14 +40,24 @@ public class ProgressResponseBody extends ResponseBody {
     private final ResponseBody responseBody;
 
     /**
-     * Observer of the progress, to publish progress.
+     * Emitter of the progress, may be shared with other response bodies of the same file.
      */
-    private final Observer<Progress> progressObserver;
+    private final ProgressEmitter progressEmitter;
 
     /**
-     * Current bytes read.
+     * Verifier fed with bytes read, nullable.
      */
-    private long totalBytesRead;
+    private final Checksum.Verifier verifier;
+
+    /**
+     * Rate limiters to acquire bytes read from.
+     */
+    private final RateLimiter[] rateLimiters;
+
+    /**
+     * Content coding to decode, {@code gzip} or {@code deflate}, null if not to decode.
+     */
+    private final String contentEncoding;
 
     /**
      * ResponseBody source buffer.
@@ -56,12 +68,93 @@ public class ProgressResponseBody extends ResponseBody {
     /**
      * Constructs an instance with the specific response body and progress observer.
      *
+     * <p>Every read is published, see {@link #ProgressResponseBody(ResponseBody, Observer, ProgressSampling)}
+     * to sample the progress.
+     *
      * @param responseBody     the specific response body
      * @param progressObserver the specific progress observer
      */
     public ProgressResponseBody(ResponseBody responseBody, Observer<Progress> progressObserver) {
+        this(responseBody, progressObserver, ProgressSampling.none());
+    }
+
+    /**
+     * Constructs an instance with the specific response body, progress observer and sampling policy.
+     *
+     * <p>A new progress is published for each emission, unless reused by the sampling policy.
+     *
+     * @param responseBody     the specific response body
+     * @param progressObserver the specific progress observer
+     * @param sampling         the specific sampling policy
+     * @see ProgressSampling#reuseProgress()
+     */
+    public ProgressResponseBody(ResponseBody responseBody, Observer<Progress> progressObserver,
+                                ProgressSampling sampling) {
+        this(responseBody, new ProgressEmitter(progressObserver, sampling));
+        progressEmitter.reset(0, responseBody.contentLength());
+    }
+
+    /**
+     * Constructs an instance whose progress is accumulated into the specific emitter.
+     *
+     * <p>Used by segmented downloads, all segments of a file share one emitter.
+     *
+     * @param responseBody    the specific response body
+     * @param progressEmitter the shared progress emitter
+     */
+    ProgressResponseBody(ResponseBody responseBody, ProgressEmitter progressEmitter) {
+        this(responseBody, progressEmitter, null, new RateLimiter[0]);
+    }
+
+    /**
+     * Constructs an instance whose progress is accumulated into the specific emitter,
+     * and whose bytes read are fed to the specific verifier and limited by the specific rate limiters.
+     *
+     * @param responseBody    the specific response body
+     * @param progressEmitter the progress emitter
+     * @param verifier        the verifier to compute the checksum, nullable
+     * @param rateLimiters    the rate limiters to acquire bytes read from
+     */
+    ProgressResponseBody(ResponseBody responseBody, ProgressEmitter progressEmitter,
+                         @Nullable Checksum.Verifier verifier, RateLimiter[] rateLimiters) {
+        this(responseBody, progressEmitter, verifier, rateLimiters, null);
+    }
+
+    /**
+     * Constructs an instance which also decodes the response body of the specific content coding.
+     *
+     * <p>The progress counts bytes on the wire, and the decoded bytes separately.
+     * The verifier is fed with decoded bytes.
+     *
+     * @param responseBody    the specific response body
+     * @param progressEmitter the progress emitter
+     * @param verifier        the verifier to compute the checksum, nullable
+     * @param rateLimiters    the rate limiters to acquire bytes read from
+     * @param contentEncoding content coding to decode, {@code gzip} or {@code deflate}, null if not to decode
+     * @throws IllegalArgumentException if the content coding is not supported
+     * @see #isDecodable(String)
+     */
+    ProgressResponseBody(ResponseBody responseBody, ProgressEmitter progressEmitter,
+                         @Nullable Checksum.Verifier verifier, RateLimiter[] rateLimiters,
+                         @Nullable String contentEncoding) {
+        if (contentEncoding != null && !isDecodable(contentEncoding)) {
+            throw new IllegalArgumentException("unsupported content encoding: " + contentEncoding);
+        }
         this.responseBody = responseBody;
-        this.progressObserver = progressObserver;
+        this.progressEmitter = progressEmitter;
+        this.verifier = verifier;
+        this.rateLimiters = rateLimiters;
+        this.contentEncoding = contentEncoding;
+    }
+
+    /**
+     * Returns a value whether the content coding can be decoded.
+     *
+     * @param contentEncoding the content coding
+     * @return {@code true} if it is {@code gzip} or {@code deflate}
+     */
+    static boolean isDecodable(String contentEncoding) {
+        return "gzip".equalsIgnoreCase(contentEncoding) || "deflate".equalsIgnoreCase(contentEncoding);
     }
 
     /**
@@ -75,13 +168,13 @@ public class ProgressResponseBody extends ResponseBody {
     }
 
     /**
-     * Returns inner content length of response body.
+     * Returns inner content length of response body, or -1 if decoding since the decoded length is unknown.
      *
      * @return content length of response body
      */
     @Override
     public long contentLength() {
-        return responseBody.contentLength();
+        return contentEncoding == null ? responseBody.contentLength() : -1;
     }
 
     /**
@@ -93,13 +186,19 @@ public class ProgressResponseBody extends ResponseBody {
     @Override
     public BufferedSource source() {
         if (bufferedSource == null) {
-            bufferedSource = Okio.buffer(source(responseBody.source()));
+            Source source = source(responseBody.source());
+            if ("gzip".equalsIgnoreCase(contentEncoding)) {
+                source = new GzipSource(source);
+            } else if ("deflate".equalsIgnoreCase(contentEncoding)) {
+                source = inflated(Okio.buffer(source));
+            }
+            bufferedSource = Okio.buffer(decoded(source));
         }
         return bufferedSource;
     }
 
     /**
-     * Wrapped the source with {@link ForwardingSource} to obtain read bytes.
+     * Wrapped the source with {@link ForwardingSource} to obtain read bytes on the wire.
      *
      * @param source source
      * @return wrapped source
@@ -109,8 +208,90 @@ public class ProgressResponseBody extends ResponseBody {
             @Override
             public long read(@Nonnull Buffer sink, long byteCount) throws IOException {
                 long bytesRead = super.read(sink, byteCount);
-                totalBytesRead += bytesRead != -1 ? bytesRead : 0;
-                progressObserver.onNext(new Progress(totalBytesRead, responseBody.contentLength()));
+                if (bytesRead != -1) {
+                    for (RateLimiter rateLimiter : rateLimiters) {
+                        rateLimiter.acquire(bytesRead);
+                    }
+                    progressEmitter.advance(bytesRead);
+                }
+                return bytesRead;
+            }
+        };
+    }
+
+    /**
+     * Inflates the {@code deflate} coded source, which is zlib wrapped as specified,
+     * or raw DEFLATE as sent by many servers.
+     *
+     * <p>The format is detected by the zlib header on the first read.
+     *
+     * @param source deflate coded source
+     * @return inflated source
+     */
+    private static Source inflated(final BufferedSource source) {
+        return new Source() {
+            private Source inflaterSource;
+
+            @Override
+            public long read(@Nonnull Buffer sink, long byteCount) throws IOException {
+                if (inflaterSource == null) {
+                    inflaterSource = new InflaterSource(source, new Inflater(!isZlib(source)));
+                }
+                return inflaterSource.read(sink, byteCount);
+            }
+
+            @Nonnull
+            @Override
+            public Timeout timeout() {
+                return source.timeout();
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (inflaterSource != null) {
+                    inflaterSource.close();
+                } else {
+                    source.close();
+                }
+            }
+        };
+    }
+
+    /**
+     * Returns a value whether the source starts with a zlib header, without consuming it.
+     *
+     * @param source the source to peek
+     * @return {@code true} if it starts with a zlib header of the deflate method, or is too short to tell
+     * @throws IOException if failed to read
+     */
+    private static boolean isZlib(BufferedSource source) throws IOException {
+        if (!source.request(2)) {
+            return true;
+        }
+        int cmf = source.getBuffer().getByte(0) & 0xff;
+        int flg = source.getBuffer().getByte(1) & 0xff;
+        return (cmf & 0x0f) == 8 && (cmf << 8 | flg) % 31 == 0;
+    }
+
+    /**
+     * Wrapped the decoded source with {@link ForwardingSource} to obtain decoded bytes.
+     *
+     * @param source decoded source
+     * @return wrapped source
+     */
+    private Source decoded(Source source) {
+        return new ForwardingSource(source) {
+            @Override
+            public long read(@Nonnull Buffer sink, long byteCount) throws IOException {
+                long bytesRead = super.read(sink, byteCount);
+                if (bytesRead != -1) {
+                    if (verifier != null) {
+                        sink.copyTo(verifier, sink.size() - bytesRead, bytesRead);
+                    }
+                    progressEmitter.advanceDecoded(bytesRead);
+                } else {
+                    progressEmitter.flush();
+                }
                 return bytesRead;
             }
         };
@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2019 sea
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package top.srsea.lever.network;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A sampling policy of progress, decides which updates are emitted.
+ *
+ * <p>The final update of a transfer is always emitted.
+ *
+ * @author sea
+ */
+public class ProgressSampling {
+
+    /**
+     * Emits every update.
+     */
+    private static final ProgressSampling NONE = new ProgressSampling(0, 0, 0, false);
+
+    /**
+     * Min bytes between two emissions.
+     */
+    private final long bytes;
+
+    /**
+     * Min ratio step between two emissions.
+     */
+    private final double step;
+
+    /**
+     * Min interval between two emissions in nanoseconds.
+     */
+    private final long intervalNanos;
+
+    /**
+     * Whether one progress is reused for every emission.
+     */
+    private final boolean reuse;
+
+    /**
+     * Constructs an instance.
+     *
+     * @param bytes         min bytes between two emissions
+     * @param step          min ratio step between two emissions
+     * @param intervalNanos min interval between two emissions in nanoseconds
+     * @param reuse         whether one progress is reused for every emission
+     */
+    private ProgressSampling(long bytes, double step, long intervalNanos, boolean reuse) {
+        this.bytes = bytes;
+        this.step = step;
+        this.intervalNanos = intervalNanos;
+        this.reuse = reuse;
+    }
+
+    /**
+     * Returns a policy that emits every update.
+     *
+     * @return policy without sampling
+     */
+    public static ProgressSampling none() {
+        return NONE;
+    }
+
+    /**
+     * Returns a policy that emits once the specific bytes have been read since the last emission.
+     *
+     * @param bytes min bytes between two emissions
+     * @return policy sampling by bytes
+     */
+    public static ProgressSampling bytes(long bytes) {
+        return new ProgressSampling(bytes, 0, 0, false);
+    }
+
+    /**
+     * Returns a policy that emits once the ratio crosses the next multiple of the specific step,
+     * such as {@code 0.01} for every percent.
+     *
+     * <p>Every update is emitted if the total is unknown.
+     *
+     * @param step ratio step between two emissions
+     * @return policy sampling by ratio
+     */
+    public static ProgressSampling ratio(double step) {
+        return new ProgressSampling(0, step, 0, false);
+    }
+
+    /**
+     * Returns a policy that emits at most once in the specific interval.
+     *
+     * @param interval min interval between two emissions
+     * @param unit     unit of the interval
+     * @return policy sampling by time
+     */
+    public static ProgressSampling interval(long interval, TimeUnit unit) {
+        return new ProgressSampling(0, 0, unit.toNanos(interval), false);
+    }
+
+    /**
+     * Returns a policy same as this one, but emits one reused progress instead of a new one each time.
+     *
+     * <p>Saves an allocation per emission. The observer must consume the progress before returning,
+     * such as without {@code observeOn}, or copy it to retain the values.
+     *
+     * @return policy reusing the emitted progress
+     * @see Progress#copy()
+     */
+    public ProgressSampling reuseProgress() {
+        return new ProgressSampling(bytes, step, intervalNanos, true);
+    }
+
+    /**
+     * Returns a value whether one progress is reused for every emission.
+     *
+     * @return {@code true} if the emitted progress is reused
+     */
+    boolean reusesProgress() {
+        return reuse;
+    }
+
+    /**
+     * Returns a value whether an update should be emitted.
+     *
+     * @param lastCurrent   current value of the last emission
+     * @param lastNanos     time of the last emission
+     * @param current       current value
+     * @param total         total value, not positive if unknown
+     * @param nowNanos      current time
+     * @return {@code true} if should be emitted
+     */
+    boolean accept(long lastCurrent, long lastNanos, long current, long total, long nowNanos) {
+        if (bytes > 0 && current - lastCurrent < bytes) {
+            return false;
+        }
+        if (step > 0 && total > 0 && (long) (current / (total * step)) == (long) (lastCurrent / (total * step))) {
+            return false;
+        }
+        return intervalNanos <= 0 || nowNanos - lastNanos >= intervalNanos;
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2019 sea
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package top.srsea.lever.network;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A token bucket limits the rate of bytes, may be shared by downloads to limit them as a whole.
+ *
+ * <p>The bucket holds at most one second of tokens, so an idle limiter allows a burst of that size.
+ * The rate can be changed at runtime, and takes effect on the next acquisition.
+ *
+ * @author sea
+ * @see DownloadTask.Builder#rateLimiters(RateLimiter...)
+ */
+public class RateLimiter {
+
+    /**
+     * Rate in bytes per second, not positive if unlimited.
+     */
+    private long rate;
+
+    /**
+     * Available tokens, negative if acquired in advance.
+     */
+    private double tokens;
+
+    /**
+     * Time of the last refill.
+     */
+    private long lastNanos = System.nanoTime();
+
+    /**
+     * Constructs an instance with the specific rate.
+     *
+     * @param bytesPerSecond rate in bytes per second, not positive if unlimited
+     */
+    public RateLimiter(long bytesPerSecond) {
+        rate = bytesPerSecond;
+        tokens = Math.max(bytesPerSecond, 0);
+    }
+
+    /**
+     * Gets the rate.
+     *
+     * @return rate in bytes per second, not positive if unlimited
+     */
+    public synchronized long rate() {
+        return rate;
+    }
+
+    /**
+     * Sets the rate.
+     *
+     * @param bytesPerSecond rate in bytes per second, not positive if unlimited
+     */
+    public synchronized void setRate(long bytesPerSecond) {
+        refill();
+        rate = bytesPerSecond;
+        if (rate > 0) {
+            tokens = Math.min(tokens, rate);
+        }
+    }
+
+    /**
+     * Acquires tokens of the specific bytes, blocks until they are available.
+     *
+     * @param bytes bytes to acquire
+     * @throws InterruptedIOException if interrupted while waiting
+     */
+    public void acquire(long bytes) throws InterruptedIOException {
+        long waitNanos;
+        synchronized (this) {
+            if (rate <= 0) {
+                return;
+            }
+            refill();
+            tokens -= bytes;
+            waitNanos = tokens < 0 ? (long) (-tokens * TimeUnit.SECONDS.toNanos(1) / rate) : 0;
+        }
+        if (waitNanos <= 0) {
+            return;
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while limiting rate.");
+        }
+    }
+
+    /**
+     * Refills tokens by the elapsed time, up to one second of tokens.
+     */
+    private void refill() {
+        long now = System.nanoTime();
+        if (rate > 0) {
+            tokens = Math.min(rate, tokens + (double) (now - lastNanos) * rate / TimeUnit.SECONDS.toNanos(1));
+        }
+        lastNanos = now;
+    }
+}
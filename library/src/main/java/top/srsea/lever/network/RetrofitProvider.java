@@ -16,7 +16,13 @@
 
 package top.srsea.lever.network;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
 import okhttp3.OkHttpClient;
+import retrofit2.CallAdapter;
+import retrofit2.Converter;
 import retrofit2.Retrofit;
 import retrofit2.adapter.rxjava2.RxJava2CallAdapterFactory;
 import retrofit2.converter.gson.GsonConverterFactory;
@@ -24,6 +30,10 @@ import retrofit2.converter.gson.GsonConverterFactory;
 /**
  * A retrofit provider.
  *
+ * <p>Retrofits are cached by base url and OkHttpClient instance, the least recently used
+ * one is evicted once more than {@link #MAX_CACHED} are cached. Reuse the OkHttpClient,
+ * such as {@link #client()}, to reuse its connections and the cached retrofit.
+ *
  * @author sea
  */
 public class RetrofitProvider {
@@ -33,36 +43,179 @@ public class RetrofitProvider {
      */
     private static final String BASE_URL = "http://localhost/";
 
+    /**
+     * Max count of cached retrofits.
+     */
+    private static final int MAX_CACHED = 16;
+
+    /**
+     * Shared call adapter factory.
+     */
+    private static final CallAdapter.Factory CALL_ADAPTER_FACTORY = RxJava2CallAdapterFactory.create();
+
+    /**
+     * Shared converter factory.
+     */
+    private static final Converter.Factory CONVERTER_FACTORY = GsonConverterFactory.create();
+
+    /**
+     * Cached retrofits in access order.
+     */
+    private static final Map<Key, CachedRetrofit> CACHE = new LinkedHashMap<Key, CachedRetrofit>(MAX_CACHED,
+            0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, CachedRetrofit> eldest) {
+            return size() > MAX_CACHED;
+        }
+    };
+
+    /**
+     * Count of cache hits.
+     */
+    private static final AtomicLong HIT_COUNT = new AtomicLong();
+
+    /**
+     * Count of cache misses.
+     */
+    private static final AtomicLong MISS_COUNT = new AtomicLong();
+
     private RetrofitProvider() {
     }
 
     /**
-     * Returns a new Retrofit with the specific base url and OkHttpClient instance.
+     * Returns the shared OkHttpClient instance.
+     *
+     * <p>Derive clients with {@link OkHttpClient#newBuilder()} to share its connection pool and dispatcher.
+     *
+     * @return shared OkHttpClient instance
+     */
+    public static OkHttpClient client() {
+        return Client.INSTANCE;
+    }
+
+    /**
+     * Returns a cached Retrofit with the specific base url and OkHttpClient instance,
+     * creates one if absent.
      *
      * @param baseUrl the specified base url
      * @param client  the specific OkHttpClient instance
-     * @return new retrofit instance
+     * @return cached retrofit instance
      */
     public static Retrofit get(String baseUrl, OkHttpClient client) {
-        return newRetrofitBuilder()
-                .client(client)
-                .baseUrl(baseUrl)
-                .build();
+        return entry(baseUrl, client).retrofit;
     }
 
     /**
-     * Returns a new Retrofit with the specific OkHttpClient instance.
+     * Returns a cached Retrofit with the specific OkHttpClient instance, creates one if absent.
      *
      * @param client the specific OkHttpClient instance
-     * @return new retrofit instance
+     * @return cached retrofit instance
      */
     public static Retrofit get(OkHttpClient client) {
+        return get(BASE_URL, client);
+    }
+
+    /**
+     * Returns a cached Retrofit with the shared OkHttpClient instance, creates one if absent.
+     *
+     * @return cached retrofit instance
+     * @see #client()
+     */
+    public static Retrofit get() {
+        return get(client());
+    }
+
+    /**
+     * Returns a cached service implementation of the cached Retrofit with the specific
+     * base url and OkHttpClient instance, creates one if absent.
+     *
+     * @param baseUrl the specified base url
+     * @param client  the specific OkHttpClient instance
+     * @param service the service interface
+     * @param <T>     type of the service
+     * @return cached service implementation
+     */
+    public static <T> T create(String baseUrl, OkHttpClient client, Class<T> service) {
+        return entry(baseUrl, client).service(service);
+    }
+
+    /**
+     * Returns a cached service implementation of the cached Retrofit with the specific
+     * OkHttpClient instance, creates one if absent.
+     *
+     * @param client  the specific OkHttpClient instance
+     * @param service the service interface
+     * @param <T>     type of the service
+     * @return cached service implementation
+     */
+    public static <T> T create(OkHttpClient client, Class<T> service) {
+        return create(BASE_URL, client, service);
+    }
+
+    /**
+     * Returns the count of cache hits.
+     *
+     * @return count of cache hits
+     */
+    public static long hitCount() {
+        return HIT_COUNT.get();
+    }
+
+    /**
+     * Returns the count of cache misses.
+     *
+     * @return count of cache misses
+     */
+    public static long missCount() {
+        return MISS_COUNT.get();
+    }
+
+    /**
+     * Returns a new Retrofit with the specific OkHttpClient instance, bypasses the cache.
+     *
+     * <p>Used for short-lived clients, which should not occupy the cache.
+     *
+     * @param client the specific OkHttpClient instance
+     * @return new retrofit instance
+     */
+    static Retrofit newRetrofit(OkHttpClient client) {
         return newRetrofitBuilder()
                 .client(client)
                 .baseUrl(BASE_URL)
                 .build();
     }
 
+    /**
+     * Returns the cached entry of the specific base url and OkHttpClient instance, creates one if absent.
+     *
+     * @param baseUrl the specified base url
+     * @param client  the specific OkHttpClient instance
+     * @return cached entry
+     */
+    private static CachedRetrofit entry(String baseUrl, OkHttpClient client) {
+        Key key = new Key(baseUrl, client);
+        synchronized (CACHE) {
+            CachedRetrofit entry = CACHE.get(key);
+            if (entry != null) {
+                HIT_COUNT.incrementAndGet();
+                return entry;
+            }
+        }
+        MISS_COUNT.incrementAndGet();
+        CachedRetrofit entry = new CachedRetrofit(newRetrofitBuilder()
+                .client(client)
+                .baseUrl(baseUrl)
+                .build());
+        synchronized (CACHE) {
+            CachedRetrofit existing = CACHE.get(key);
+            if (existing != null) {
+                return existing;
+            }
+            CACHE.put(key, entry);
+        }
+        return entry;
+    }
+
     /**
      * Creates a new retrofit builder with RxJava and Gson adapter.
      *
@@ -70,7 +223,61 @@ public class RetrofitProvider {
      */
     private static Retrofit.Builder newRetrofitBuilder() {
         return new Retrofit.Builder()
-                .addCallAdapterFactory(RxJava2CallAdapterFactory.create())
-                .addConverterFactory(GsonConverterFactory.create());
+                .addCallAdapterFactory(CALL_ADAPTER_FACTORY)
+                .addConverterFactory(CONVERTER_FACTORY);
+    }
+
+    /**
+     * Cache key of a base url and an OkHttpClient instance, compares the client by identity.
+     */
+    private static class Key {
+        final String baseUrl;
+        final OkHttpClient client;
+
+        Key(String baseUrl, OkHttpClient client) {
+            this.baseUrl = baseUrl;
+            this.client = client;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return client == key.client && baseUrl.equals(key.baseUrl);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * baseUrl.hashCode() + System.identityHashCode(client);
+        }
+    }
+
+    /**
+     * A cached retrofit with its service implementations.
+     */
+    private static class CachedRetrofit {
+        final Retrofit retrofit;
+        final Map<Class<?>, Object> services = new LinkedHashMap<>();
+
+        CachedRetrofit(Retrofit retrofit) {
+            this.retrofit = retrofit;
+        }
+
+        synchronized <T> T service(Class<T> service) {
+            Object instance = services.get(service);
+            if (instance == null) {
+                instance = retrofit.create(service);
+                services.put(service, instance);
+            }
+            return service.cast(instance);
+        }
+    }
+
+    /**
+     * Holder of the shared client, created on first use.
+     */
+    private static class Client {
+        private static final OkHttpClient INSTANCE = new OkHttpClient();
     }
 }
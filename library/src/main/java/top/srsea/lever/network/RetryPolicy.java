@@ -0,0 +1,320 @@
+/*
+ * Copyright (C) 2019 sea
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package top.srsea.lever.network;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+
+import retrofit2.HttpException;
+import top.srsea.torque.common.Preconditions;
+
+/**
+ * A retry policy of downloads, decides whether and when a failed request is retried.
+ *
+ * <p>Delays grow exponentially from the initial delay, up to the max delay, and are reduced by a random
+ * jitter so that clients failed at the same time do not retry at the same time.
+ *
+ * @author sea
+ */
+public class RetryPolicy {
+
+    /**
+     * Never retries.
+     */
+    private static final RetryPolicy NONE = new Builder().maxAttempts(1).build();
+
+    /**
+     * Random source of jitter.
+     */
+    private static final Random RANDOM = new Random();
+
+    /**
+     * Max attempts of a download, including the first one.
+     */
+    private final int maxAttempts;
+
+    /**
+     * Delay before the first retry in milliseconds.
+     */
+    private final long initialDelay;
+
+    /**
+     * Max delay before a retry in milliseconds.
+     */
+    private final long maxDelay;
+
+    /**
+     * Multiplier of the delay after each retry.
+     */
+    private final double multiplier;
+
+    /**
+     * Max fraction of the delay to reduce randomly.
+     */
+    private final double jitter;
+
+    /**
+     * Retryable HTTP status codes.
+     */
+    private final Set<Integer> statusCodes;
+
+    /**
+     * Retryable exception classes.
+     */
+    private final List<Class<? extends Throwable>> exceptions;
+
+    /**
+     * Constructs an instance with builder.
+     *
+     * @param builder the specific builder
+     */
+    private RetryPolicy(Builder builder) {
+        maxAttempts = builder.maxAttempts;
+        initialDelay = builder.initialDelay;
+        maxDelay = Math.max(builder.maxDelay, builder.initialDelay);
+        multiplier = builder.multiplier;
+        jitter = builder.jitter;
+        statusCodes = Collections.unmodifiableSet(new HashSet<>(builder.statusCodes));
+        exceptions = Collections.unmodifiableList(new ArrayList<>(builder.exceptions));
+    }
+
+    /**
+     * Returns a policy that never retries.
+     *
+     * @return policy without retry
+     */
+    public static RetryPolicy none() {
+        return NONE;
+    }
+
+    /**
+     * Returns a policy of default options, see {@link Builder}.
+     *
+     * @return default policy
+     */
+    public static RetryPolicy defaults() {
+        return new Builder().build();
+    }
+
+    /**
+     * Gets the max attempts, including the first one.
+     *
+     * @return max attempts
+     */
+    public int maxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * Returns a value whether the specific failure is worth retrying.
+     *
+     * @param throwable the failure
+     * @return {@code true} if retryable
+     */
+    boolean isRetryable(Throwable throwable) {
+        // the same bytes are served again, and the storage stays the same.
+        if (throwable instanceof ChecksumMismatchException || throwable instanceof StorageException) {
+            return false;
+        }
+        if (throwable instanceof HttpException) {
+            return statusCodes.contains(((HttpException) throwable).code());
+        }
+        for (Class<? extends Throwable> exception : exceptions) {
+            if (exception.isInstance(throwable)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the delay before the specific retry.
+     *
+     * @param retry count of the retry, starts from 1
+     * @return delay in milliseconds
+     */
+    long delay(int retry) {
+        double delay = Math.min(initialDelay * Math.pow(multiplier, retry - 1), maxDelay);
+        return (long) (delay * (1 - jitter * RANDOM.nextDouble()));
+    }
+
+    /**
+     * Builder of {@link RetryPolicy}.
+     *
+     * @author sea
+     */
+    public static class Builder {
+
+        /**
+         * Max attempts.
+         */
+        int maxAttempts = 3;
+
+        /**
+         * Delay before the first retry in milliseconds.
+         */
+        long initialDelay = 1000;
+
+        /**
+         * Max delay in milliseconds.
+         */
+        long maxDelay = 30_000;
+
+        /**
+         * Multiplier of the delay.
+         */
+        double multiplier = 2;
+
+        /**
+         * Fraction of jitter.
+         */
+        double jitter = 0.5;
+
+        /**
+         * Retryable HTTP status codes.
+         */
+        Set<Integer> statusCodes = new HashSet<>(Arrays.asList(408, 429, 500, 502, 503, 504));
+
+        /**
+         * Retryable exception classes.
+         */
+        List<Class<? extends Throwable>> exceptions =
+                Collections.<Class<? extends Throwable>>singletonList(IOException.class);
+
+        /**
+         * Sets the max attempts of a download including the first one, default is 3.
+         *
+         * <p>Attempts are counted over the whole download, shared by all connections.
+         *
+         * @param maxAttempts the specific max attempts
+         * @return current builder
+         * @throws IllegalArgumentException if not positive
+         */
+        public Builder maxAttempts(int maxAttempts) {
+            Preconditions.require(maxAttempts > 0, new IllegalArgumentException("maxAttempts must be positive."));
+            this.maxAttempts = maxAttempts;
+            return this;
+        }
+
+        /**
+         * Sets the delay before the first retry, default is 1 second.
+         *
+         * @param delay the specific delay
+         * @param unit  unit of the delay
+         * @return current builder
+         * @throws IllegalArgumentException if negative
+         */
+        public Builder initialDelay(long delay, @Nonnull TimeUnit unit) {
+            Preconditions.require(delay >= 0, new IllegalArgumentException("initialDelay must not be negative."));
+            this.initialDelay = unit.toMillis(delay);
+            return this;
+        }
+
+        /**
+         * Sets the max delay before a retry, default is 30 seconds.
+         *
+         * <p>The initial delay is used instead if greater.
+         *
+         * @param delay the specific delay
+         * @param unit  unit of the delay
+         * @return current builder
+         * @throws IllegalArgumentException if negative
+         */
+        public Builder maxDelay(long delay, @Nonnull TimeUnit unit) {
+            Preconditions.require(delay >= 0, new IllegalArgumentException("maxDelay must not be negative."));
+            this.maxDelay = unit.toMillis(delay);
+            return this;
+        }
+
+        /**
+         * Sets the multiplier of the delay after each retry, default is 2.
+         *
+         * @param multiplier the specific multiplier, not less than 1
+         * @return current builder
+         * @throws IllegalArgumentException if less than 1
+         */
+        public Builder multiplier(double multiplier) {
+            Preconditions.require(multiplier >= 1, new IllegalArgumentException("multiplier must not be less than 1."));
+            this.multiplier = multiplier;
+            return this;
+        }
+
+        /**
+         * Sets the max fraction of the delay to reduce randomly, default is 0.5.
+         *
+         * @param jitter the specific fraction, between 0 and 1
+         * @return current builder
+         * @throws IllegalArgumentException if not between 0 and 1
+         */
+        public Builder jitter(double jitter) {
+            Preconditions.require(jitter >= 0 && jitter <= 1,
+                    new IllegalArgumentException("jitter must be between 0 and 1."));
+            this.jitter = jitter;
+            return this;
+        }
+
+        /**
+         * Sets the retryable HTTP status codes, default are 408, 429, 500, 502, 503 and 504.
+         *
+         * @param statusCodes the specific status codes
+         * @return current builder
+         */
+        public Builder statusCodes(int... statusCodes) {
+            this.statusCodes = new HashSet<>();
+            for (int code : statusCodes) {
+                this.statusCodes.add(code);
+            }
+            return this;
+        }
+
+        /**
+         * Sets the retryable exception classes, default is {@link IOException}.
+         *
+         * <p>HTTP errors are judged by the status codes only. A {@link ChecksumMismatchException}
+         * or a {@link StorageException} is never retried.
+         *
+         * @param exceptions the specific exception classes
+         * @return current builder
+         */
+        @SafeVarargs
+        public final Builder exceptions(Class<? extends Throwable>... exceptions) {
+            this.exceptions = new ArrayList<>();
+            for (Class<? extends Throwable> exception : exceptions) {
+                this.exceptions.add(exception);
+            }
+            return this;
+        }
+
+        /**
+         * Builds a {@link RetryPolicy} with this builder.
+         *
+         * @return the retry policy
+         */
+        public RetryPolicy build() {
+            return new RetryPolicy(this);
+        }
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright (C) 2019 sea
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package top.srsea.lever.network;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A byte range of a remote file, fetched by one connection.
+ *
+ * @author sea
+ */
+class Segment {
+
+    /**
+     * First byte offset of this segment, inclusive.
+     */
+    final long start;
+
+    /**
+     * Last byte offset of this segment, inclusive, may be shrunk when the tail is stolen.
+     */
+    volatile long end;
+
+    /**
+     * Next byte offset to write, may be read by other threads to commit a checkpoint.
+     */
+    volatile long position;
+
+    /**
+     * Time when a connection started to fetch this segment, {@code 0} if not started.
+     */
+    private volatile long startNanos;
+
+    /**
+     * Position when a connection started to fetch this segment.
+     */
+    private volatile long startPosition;
+
+    /**
+     * Constructs an instance with the specific range.
+     *
+     * @param start first byte offset, inclusive
+     * @param end   last byte offset, inclusive
+     */
+    Segment(long start, long end) {
+        this(start, end, start);
+    }
+
+    /**
+     * Constructs an instance with the specific range and position.
+     *
+     * @param start    first byte offset, inclusive
+     * @param end      last byte offset, inclusive
+     * @param position next byte offset to write
+     */
+    Segment(long start, long end, long position) {
+        this.start = start;
+        this.end = end;
+        this.position = position;
+    }
+
+    /**
+     * Creates a segment from the specific offset to the end of the stream, whose length is unknown.
+     *
+     * @param start first byte offset, inclusive
+     * @return segment to the end of the stream
+     */
+    static Segment from(long start) {
+        return new Segment(start, Long.MAX_VALUE - 1);
+    }
+
+    /**
+     * Returns a value whether all bytes of this segment have been written.
+     *
+     * @return {@code true} if completed
+     */
+    boolean isCompleted() {
+        return position > end;
+    }
+
+    /**
+     * Returns the count of bytes not written yet.
+     *
+     * @return remaining bytes
+     */
+    long remaining() {
+        return end - position + 1;
+    }
+
+    /**
+     * Marks this segment as being fetched from now on, to measure the throughput.
+     */
+    void activate() {
+        startPosition = position;
+        startNanos = System.nanoTime();
+    }
+
+    /**
+     * Returns the throughput of the connection fetching this segment.
+     *
+     * @param now        current time in nanoseconds
+     * @param minElapsed minimum elapsed nanoseconds to measure
+     * @return bytes per second, or {@code -1} if not started or not measured long enough
+     */
+    double speed(long now, long minElapsed) {
+        long started = startNanos;
+        long elapsed = now - started;
+        if (started == 0 || elapsed < minElapsed) {
+            return -1;
+        }
+        return (position - startPosition) * 1e9 / elapsed;
+    }
+
+    /**
+     * Writes the buffer at current position, and advances the position.
+     *
+     * <p>Bytes beyond the end are discarded, because the end may have been shrunk by {@link #splitTail(long)}
+     * since the buffer was filled, and those bytes are fetched by another connection.
+     *
+     * @param channel channel of the target file
+     * @param buffer  bytes to write
+     * @return count of discarded bytes
+     * @throws IOException if an I/O error occurs
+     */
+    synchronized long write(FileChannel channel, ByteBuffer buffer) throws IOException {
+        long discarded = Math.max(0, buffer.remaining() - remaining());
+        buffer.limit((int) (buffer.limit() - discarded));
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+        return discarded;
+    }
+
+    /**
+     * Splits the remaining bytes in half, this segment keeps the head and the returned segment takes the tail.
+     *
+     * <p>The caller should make the tail visible to journal before shrinking this segment,
+     * so the committed segments always cover the whole file, then call {@link #shrink(Segment)}
+     * while holding the lock of this segment.
+     *
+     * @param minSize minimum size of both halves
+     * @return the tail, or {@code null} if remaining bytes are too few to split
+     */
+    Segment splitTail(long minSize) {
+        long remaining = remaining();
+        if (remaining < minSize * 2) {
+            return null;
+        }
+        return new Segment(position + remaining / 2, end);
+    }
+
+    /**
+     * Shrinks this segment to the head of the specific tail.
+     *
+     * @param tail tail split by {@link #splitTail(long)}
+     */
+    void shrink(Segment tail) {
+        end = tail.start - 1;
+    }
+
+    /**
+     * Returns the value of {@code Range} header to fetch the remaining bytes.
+     *
+     * @return range header value
+     */
+    String range() {
+        return "bytes=" + position + "-" + end;
+    }
+
+    /**
+     * Splits a file of the specific length into segments of equal size.
+     *
+     * <p>The last segment takes the remainder, and no segment is empty.
+     *
+     * @param length length of the file, must be positive
+     * @param count  expected count of segments
+     * @return segments in order of offset
+     */
+    static List<Segment> split(long length, int count) {
+        int n = (int) Math.max(1, Math.min(count, length));
+        long size = length / n;
+        List<Segment> segments = new ArrayList<>(n);
+        for (int i = 0; i < n; ++i) {
+            long start = i * size;
+            long end = i == n - 1 ? length - 1 : start + size - 1;
+            segments.add(new Segment(start, end));
+        }
+        return segments;
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2019 sea
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package top.srsea.lever.network;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+
+/**
+ * A work-stealing scheduler of segments for parallel range fetches.
+ *
+ * <p>Each connection takes a pending segment; once none is pending, an idle connection
+ * steals the tail of the segment expected to finish last, judged by the throughput
+ * of the connection fetching it, so that a slow connection does not delay the whole download.
+ *
+ * @author sea
+ */
+class SegmentScheduler {
+
+    /**
+     * Minimum time to measure the throughput of a connection, 500 ms.
+     */
+    private static final long MIN_SAMPLE_NANOS = 500_000_000L;
+
+    /**
+     * All segments, the journal shares this list if any, stolen tails are appended.
+     */
+    private final List<Segment> segments;
+
+    /**
+     * Segments not taken by any connection yet.
+     */
+    private final Queue<Segment> pending = new ArrayDeque<>();
+
+    /**
+     * Segments taken by connections.
+     */
+    private final List<Segment> active = new ArrayList<>();
+
+    /**
+     * Minimum size of a stolen segment, and of the segment left to its victim.
+     */
+    private final long minSize;
+
+    /**
+     * Constructs an instance.
+     *
+     * @param segments all segments, stolen tails are appended to it, must be thread-safe
+     * @param minSize  minimum size of a split segment
+     */
+    SegmentScheduler(List<Segment> segments, long minSize) {
+        this.segments = segments;
+        this.minSize = Math.max(minSize, 1);
+        for (Segment segment : segments) {
+            if (!segment.isCompleted()) {
+                pending.add(segment);
+            }
+        }
+    }
+
+    /**
+     * Returns the next segment for an idle connection.
+     *
+     * @return a pending segment or a stolen tail, or {@code null} if there is no more work worth stealing
+     */
+    synchronized Segment next() {
+        Segment segment = pending.poll();
+        if (segment == null) {
+            segment = steal();
+        }
+        if (segment != null) {
+            segment.activate();
+            active.add(segment);
+        }
+        return segment;
+    }
+
+    /**
+     * Splits the segment expected to finish last.
+     *
+     * @return the stolen tail, or {@code null} if no segment is large enough to split
+     */
+    private Segment steal() {
+        long now = System.nanoTime();
+        double measured = 0;
+        int count = 0;
+        for (int i = active.size() - 1; i >= 0; --i) {
+            Segment segment = active.get(i);
+            if (segment.isCompleted()) {
+                active.remove(i);
+                continue;
+            }
+            double speed = segment.speed(now, MIN_SAMPLE_NANOS);
+            if (speed > 0) {
+                measured += speed;
+                ++count;
+            }
+        }
+        // connections not measured yet are assumed to be as fast as the others.
+        double average = count > 0 ? measured / count : 1;
+        Segment victim = null;
+        double latest = 0;
+        for (Segment segment : active) {
+            if (segment.remaining() < minSize * 2) {
+                continue;
+            }
+            double speed = segment.speed(now, MIN_SAMPLE_NANOS);
+            double eta = segment.remaining() / (speed > 0 ? speed : average);
+            if (eta > latest) {
+                latest = eta;
+                victim = segment;
+            }
+        }
+        if (victim == null) {
+            return null;
+        }
+        synchronized (victim) {
+            Segment tail = victim.splitTail(minSize);
+            if (tail == null) {
+                return null;
+            }
+            segments.add(tail);
+            victim.shrink(tail);
+            return tail;
+        }
+    }
+}
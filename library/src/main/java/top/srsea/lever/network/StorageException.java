@@ -0,0 +1,54 @@
+/*
+ * Copyright (C) 2019 sea
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package top.srsea.lever.network;
+
+import java.io.IOException;
+
+/**
+ * Thrown if the local storage cannot hold or create the files of a download, such as a directory
+ * that cannot be made.
+ *
+ * <p>Never retried, since retrying cannot fix the storage.
+ *
+ * @author sea
+ */
+public class StorageException extends IOException {
+
+    /**
+     * Version of the serialized form.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructs an instance with the specific detail message.
+     *
+     * @param message the detail message
+     */
+    public StorageException(String message) {
+        super(message);
+    }
+
+    /**
+     * Constructs an instance with the specific detail message and cause.
+     *
+     * @param message the detail message
+     * @param cause   the cause
+     */
+    public StorageException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
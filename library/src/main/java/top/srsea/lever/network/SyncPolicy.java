@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2019 sea
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package top.srsea.lever.network;
+
+/**
+ * A policy to flush written bytes of a download to the storage device.
+ *
+ * @author sea
+ * @see java.nio.channels.FileChannel#force(boolean)
+ */
+public enum SyncPolicy {
+
+    /**
+     * Never syncs, leaves it to the operating system.
+     */
+    NONE,
+
+    /**
+     * Syncs when a file or a segment is completed.
+     */
+    ON_COMPLETE,
+
+    /**
+     * Syncs before every journal commit of a resumable download, and when completed,
+     * so that committed offsets survive a power loss.
+     */
+    ON_CHECKPOINT
+}